@@ -0,0 +1,123 @@
+package org.eclipse.compare.rangedifferencer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.lang3.tuple.Pair;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.outerj.daisy.diff.DiffCheckpoint;
+import org.outerj.daisy.diff.DiffMode;
+import org.outerj.daisy.diff.benchmark.CorpusGenerator;
+import org.outerj.daisy.diff.benchmark.DiffBenchmark;
+import org.outerj.daisy.diff.html.ChunkCreator;
+import org.outerj.daisy.diff.html.TextNodeComparator;
+import org.outerj.daisy.diff.html.dom.TextNode;
+import org.xml.sax.SAXException;
+
+/**
+ * The two phases of {@link HTMLDiffer}: the search of the differences, and
+ * the markup of the trees with them.
+ * <p>
+ * Markup changes the trees, so every invocation of {@link #processDifferences}
+ * runs on a freshly parsed and searched pair of documents. The setup is not
+ * measured, but it makes the markup benchmark run much slower than its score.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class HTMLDifferBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Documents {
+
+        @Param({"2000", "20000"})
+        public int tokens;
+
+        @Param({"FULL", "CHUNKED", "GREEDY"})
+        public DiffMode mode;
+
+        HTMLDiffer differ;
+
+        TextNodeComparator left;
+
+        TextNodeComparator right;
+
+        List<Pair<List<TextNode>, List<TextNode>>> chunks;
+
+        @Setup
+        public void parse() throws IOException, SAXException {
+            differ = new HTMLDiffer(null);
+            TextNodeComparator[] comparators = CorpusGenerator.forBenchmark(tokens).parse();
+            left = comparators[0];
+            right = comparators[1];
+            if (mode == DiffMode.CHUNKED) {
+                chunks = new ArrayList<>(new ChunkCreator(left, right).getChunks(DiffBenchmark.CHUNK_SIZE));
+            }
+        }
+
+        /**
+         * @return the differences of every chunk, or of the whole documents
+         * if the mode does not split them into chunks
+         */
+        List<List<RangeDifference>> search() {
+            List<List<RangeDifference>> differences = new ArrayList<>();
+            if (chunks != null) {
+                for (Pair<List<TextNode>, List<TextNode>> chunk : chunks) {
+                    differences.add(differ.findChunkDifferences(chunk, null).differences);
+                }
+            } else {
+                differences.add(differ.findDocumentDifferences(left, right, mode, null).differences);
+            }
+            return differences;
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class SearchedDocuments {
+
+        Documents documents;
+
+        List<List<RangeDifference>> differences;
+
+        @Setup(Level.Invocation)
+        public void search(Documents template) throws IOException, SAXException {
+            documents = new Documents();
+            documents.tokens = template.tokens;
+            documents.mode = template.mode;
+            documents.parse();
+            differences = documents.search();
+        }
+    }
+
+    @Benchmark
+    public List<List<RangeDifference>> findDifferences(Documents documents) {
+        return documents.search();
+    }
+
+    @Benchmark
+    public TextNodeComparator processDifferences(SearchedDocuments searched) {
+        Documents documents = searched.documents;
+        for (int i = 0; i < searched.differences.size(); i++) {
+            if (documents.chunks != null) {
+                documents.left.setTextNodes(documents.chunks.get(i).getLeft());
+                documents.right.setTextNodes(documents.chunks.get(i).getRight());
+            }
+            documents.differ.processDifferences(documents.left, documents.right, searched.differences.get(i), DiffCheckpoint.NONE);
+        }
+        return documents.right;
+    }
+}
@@ -0,0 +1,57 @@
+package org.outerj.daisy.diff.benchmark;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.lang3.tuple.Pair;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.outerj.daisy.diff.html.ChunkCreator;
+import org.outerj.daisy.diff.html.TextNodeComparator;
+import org.outerj.daisy.diff.html.dom.TextNode;
+import org.xml.sax.SAXException;
+
+/**
+ * Splitting of a pair of documents into chunks by their segments with the
+ * {@link ChunkCreator}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ChunkCreatorBenchmark {
+
+    @Param({"2000", "20000", "200000"})
+    public int tokens;
+
+    @Param({"500", "5000"})
+    public int chunkSize;
+
+    private TextNodeComparator left;
+
+    private TextNodeComparator right;
+
+    @Setup
+    public void parse() throws IOException, SAXException {
+        TextNodeComparator[] comparators = CorpusGenerator.forBenchmark(tokens).parse();
+        left = comparators[0];
+        right = comparators[1];
+    }
+
+    @Benchmark
+    public Collection<Pair<List<TextNode>, List<TextNode>>> getChunks() {
+        return new ChunkCreator(left, right).getChunks(chunkSize);
+    }
+}
@@ -0,0 +1,343 @@
+package org.outerj.daisy.diff.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates pairs of an old and a new HTML document for the benchmarks and
+ * stress runs. The documents look like ours: segments starting with a
+ * "{М:S000001}" marker, paragraphs and (nested) tables with bold, italic and
+ * styled text, and hidden display_none spans. The new document is a copy of
+ * the old one changed as described by a {@link CorpusProfile}: edited words,
+ * moved blocks and changed attributes.
+ * <p>
+ * The same profile and seed always generate the same pair, so results of
+ * different runs and machines are comparable.
+ * <p>
+ * Run the class with an output directory, a number of tokens and optionally a
+ * seed to write a pair with the default profile to old.html and new.html.
+ */
+public class CorpusGenerator {
+
+    /**
+     * Seed of the documents the benchmarks run on.
+     */
+    public static final long BENCHMARK_SEED = 20170626L;
+
+    private static final String[] WORDS = {
+        "the", "contract", "party", "shall", "pay", "amount", "of", "and", "to", "in",
+        "agreement", "term", "notice", "within", "days", "after", "receipt", "invoice",
+        "supplier", "customer", "goods", "delivery", "price", "tax", "liability", "damages",
+        "force", "majeure", "event", "period", "written", "consent", "termination", "clause"
+    };
+
+    private static final String[] STYLES = {
+        "color: red", "color: blue", "font-weight: bold", "text-decoration: underline",
+        "color: red; font-weight: bold", "font-weight:bold;color:red"
+    };
+
+    private static final String[] CLASSES = {
+        "highlight", "note", "term", "highlight note", "note highlight"
+    };
+
+    private static final String HIDDEN_CLASS = "color__800000 display_none";
+
+    private static final int FRAGMENTS_PER_BLOCK = 12;
+
+    private final CorpusProfile profile;
+
+    private final Random random;
+
+    public CorpusGenerator(CorpusProfile profile, long seed) {
+        this.profile = profile;
+        this.random = new Random(seed);
+    }
+
+    /**
+     * @return the pair of the given size with the default profile and the
+     * {@link #BENCHMARK_SEED}
+     */
+    public static DocumentPair forBenchmark(int tokens) {
+        return new CorpusGenerator(new CorpusProfile(tokens), BENCHMARK_SEED).generate();
+    }
+
+    public DocumentPair generate() {
+        List<List<Block>> oldSegments = generateSegments();
+        List<List<Block>> newSegments = new ArrayList<>(oldSegments.size());
+        for (List<Block> segment : oldSegments) {
+            List<Block> copy = new ArrayList<>(segment.size());
+            for (Block block : segment) {
+                copy.add(new Block(block));
+            }
+            newSegments.add(copy);
+        }
+        editWords(newSegments);
+        changeAttributes(newSegments);
+        moveBlocks(newSegments);
+        return new DocumentPair(render(oldSegments), render(newSegments));
+    }
+
+    private List<List<Block>> generateSegments() {
+        List<Block> blocks = new ArrayList<>();
+        int words = 0;
+        while (words < profile.getTokens()) {
+            Block block = new Block(blocks.size(), random.nextDouble() < profile.getTables(),
+                random.nextDouble() < profile.getNestedTables());
+            int length = FRAGMENTS_PER_BLOCK / 2 + random.nextInt(FRAGMENTS_PER_BLOCK + 1);
+            for (int i = 0; i < length && words < profile.getTokens(); i++) {
+                Fragment fragment = fragment();
+                block.fragments.add(fragment);
+                words += fragment.words.size();
+            }
+            blocks.add(block);
+        }
+        int segmentCount = profile.getSegments();
+        List<List<Block>> segments = new ArrayList<>(segmentCount);
+        for (int i = 0; i < segmentCount; i++) {
+            int start = (int) ((long) i * blocks.size() / segmentCount);
+            int end = (int) ((long) (i + 1) * blocks.size() / segmentCount);
+            segments.add(new ArrayList<>(blocks.subList(start, end)));
+        }
+        return segments;
+    }
+
+    private Fragment fragment() {
+        if (random.nextDouble() < profile.getHiddenText()) {
+            return new Fragment(Kind.HIDDEN, 0, words(2 + random.nextInt(4)));
+        }
+        int kind = random.nextInt(100);
+        if (kind < 70) {
+            return new Fragment(Kind.PLAIN, 0, words(1));
+        } else if (kind < 78) {
+            return new Fragment(Kind.BOLD, 0, words(1 + random.nextInt(3)));
+        } else if (kind < 84) {
+            return new Fragment(Kind.ITALIC, 0, words(1 + random.nextInt(3)));
+        } else if (kind < 92) {
+            return new Fragment(Kind.STYLED, random.nextInt(STYLES.length), words(1 + random.nextInt(3)));
+        } else {
+            return new Fragment(Kind.CLASSED, random.nextInt(CLASSES.length), words(1 + random.nextInt(3)));
+        }
+    }
+
+    private List<String> words(int count) {
+        List<String> words = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            words.add(word());
+        }
+        return words;
+    }
+
+    private String word() {
+        return WORDS[random.nextInt(WORDS.length)];
+    }
+
+    /**
+     * Decides for every word whether it is edited. The decisions form a Markov
+     * chain that stays in an edit with the probability of the edit clustering
+     * and enters one with the probability that keeps the share of edited words
+     * at the edit density.
+     */
+    private void editWords(List<List<Block>> segments) {
+        double density = profile.getEditDensity();
+        double clustering = profile.getEditClustering();
+        double startProbability = density >= 1 ? 1 : Math.min(1, density * (1 - clustering) / (1 - density));
+        boolean editing = false;
+        for (List<Block> segment : segments) {
+            for (Block block : segment) {
+                for (Fragment fragment : block.fragments) {
+                    List<String> edited = new ArrayList<>(fragment.words.size() + 1);
+                    for (String word : fragment.words) {
+                        editing = random.nextDouble() < (editing ? clustering : startProbability);
+                        if (!editing) {
+                            edited.add(word);
+                            continue;
+                        }
+                        switch (random.nextInt(3)) {
+                            case 0:
+                                edited.add(word());
+                                break;
+                            case 1:
+                                edited.add(word);
+                                edited.add(word());
+                                break;
+                            default:
+                                break;
+                        }
+                    }
+                    fragment.words = edited;
+                }
+            }
+        }
+    }
+
+    private void changeAttributes(List<List<Block>> segments) {
+        for (List<Block> segment : segments) {
+            for (Block block : segment) {
+                for (Fragment fragment : block.fragments) {
+                    if (random.nextDouble() >= profile.getAttributeChanges()) {
+                        continue;
+                    }
+                    if (fragment.kind == Kind.STYLED) {
+                        fragment.attribute = (fragment.attribute + 1 + random.nextInt(STYLES.length - 1)) % STYLES.length;
+                    } else if (fragment.kind == Kind.CLASSED) {
+                        fragment.attribute = (fragment.attribute + 1 + random.nextInt(CLASSES.length - 1)) % CLASSES.length;
+                    }
+                }
+            }
+        }
+    }
+
+    private void moveBlocks(List<List<Block>> segments) {
+        int blockCount = 0;
+        for (List<Block> segment : segments) {
+            blockCount += segment.size();
+        }
+        if (blockCount < 2) {
+            return;
+        }
+        for (int i = 0; i < profile.getBlockMoves(); i++) {
+            List<Block> from;
+            do {
+                from = segments.get(random.nextInt(segments.size()));
+            } while (from.isEmpty());
+            Block block = from.remove(random.nextInt(from.size()));
+            List<Block> to = segments.get(random.nextInt(segments.size()));
+            to.add(random.nextInt(to.size() + 1), block);
+        }
+    }
+
+    private static String render(List<List<Block>> segments) {
+        StringBuilder html = new StringBuilder("<html><body>");
+        for (int i = 0; i < segments.size(); i++) {
+            html.append(String.format("<span>{М:S%06d}</span>", i + 1));
+            for (Block block : segments.get(i)) {
+                block.render(html);
+            }
+        }
+        return html.append("</body></html>").toString();
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: CorpusGenerator <output directory> <tokens> [seed]");
+            System.exit(1);
+        }
+        File directory = new File(args[0]);
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : BENCHMARK_SEED;
+        DocumentPair pair = new CorpusGenerator(new CorpusProfile(Integer.parseInt(args[1])), seed).generate();
+        directory.mkdirs();
+        Files.write(new File(directory, "old.html").toPath(), pair.getOldDocument().getBytes(StandardCharsets.UTF_8));
+        Files.write(new File(directory, "new.html").toPath(), pair.getNewDocument().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private enum Kind {
+        PLAIN, BOLD, ITALIC, STYLED, CLASSED, HIDDEN
+    }
+
+    /**
+     * Words with the same formatting.
+     */
+    private static class Fragment {
+
+        final Kind kind;
+
+        /**
+         * Index of the style or class of styled spans.
+         */
+        int attribute;
+
+        List<String> words;
+
+        Fragment(Kind kind, int attribute, List<String> words) {
+            this.kind = kind;
+            this.attribute = attribute;
+            this.words = words;
+        }
+
+        Fragment(Fragment fragment) {
+            this(fragment.kind, fragment.attribute, new ArrayList<>(fragment.words));
+        }
+
+        void render(StringBuilder html) {
+            String text = String.join(" ", words);
+            switch (kind) {
+                case BOLD:
+                    html.append("<b>").append(text).append("</b>");
+                    break;
+                case ITALIC:
+                    html.append("<i>").append(text).append("</i>");
+                    break;
+                case STYLED:
+                    html.append("<span style=\"").append(STYLES[attribute]).append("\">").append(text).append("</span>");
+                    break;
+                case CLASSED:
+                    html.append("<span class=\"").append(CLASSES[attribute]).append("\">").append(text).append("</span>");
+                    break;
+                case HIDDEN:
+                    html.append("<span class=\"").append(HIDDEN_CLASS).append("\">").append(text).append("</span>");
+                    break;
+                default:
+                    html.append(text);
+                    break;
+            }
+        }
+    }
+
+    /**
+     * A paragraph or a table. Tables have a second cell with the number of
+     * the block, which moves along with it.
+     */
+    private static class Block {
+
+        final int number;
+
+        final boolean table;
+
+        final boolean nested;
+
+        final List<Fragment> fragments = new ArrayList<>();
+
+        Block(int number, boolean table, boolean nested) {
+            this.number = number;
+            this.table = table;
+            this.nested = nested;
+        }
+
+        Block(Block block) {
+            this(block.number, block.table, block.nested);
+            for (Fragment fragment : block.fragments) {
+                fragments.add(new Fragment(fragment));
+            }
+        }
+
+        void render(StringBuilder html) {
+            if (table) {
+                html.append("<table><tr><td>");
+                if (nested) {
+                    html.append("<table><tr><td>");
+                }
+            } else {
+                html.append("<p>");
+            }
+            for (int i = 0; i < fragments.size(); i++) {
+                if (i > 0) {
+                    html.append(' ');
+                }
+                fragments.get(i).render(html);
+            }
+            if (table) {
+                if (nested) {
+                    html.append("</td></tr></table>");
+                }
+                html.append("</td><td>").append(number).append("</td></tr></table>");
+            } else {
+                html.append("</p>");
+            }
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package org.outerj.daisy.diff.benchmark;
+
+/**
+ * Shape of the document pairs generated by the {@link CorpusGenerator}. The
+ * defaults give documents close to ours; the setters return the profile so
+ * they can be chained.
+ */
+public class CorpusProfile {
+
+    private final int tokens;
+
+    private int segments;
+
+    private double editDensity = 0.02;
+
+    private double editClustering = 0.5;
+
+    private int blockMoves = 0;
+
+    private double attributeChanges = 0.1;
+
+    private double hiddenText = 0.03;
+
+    private double tables = 0.2;
+
+    private double nestedTables = 0.25;
+
+    /**
+     * @param tokens approximate number of words of the old document, without
+     * the segment markers and table cell numbers
+     */
+    public CorpusProfile(int tokens) {
+        if (tokens < 1) {
+            throw new IllegalArgumentException("At least one token is needed: " + tokens);
+        }
+        this.tokens = tokens;
+        this.segments = Math.max(1, tokens / 200);
+    }
+
+    public int getTokens() {
+        return tokens;
+    }
+
+    public int getSegments() {
+        return segments;
+    }
+
+    /**
+     * @param segments number of segment markers in each document, every
+     * segment holding about the same number of blocks
+     */
+    public CorpusProfile setSegments(int segments) {
+        if (segments < 1) {
+            throw new IllegalArgumentException("At least one segment is needed: " + segments);
+        }
+        this.segments = segments;
+        return this;
+    }
+
+    public double getEditDensity() {
+        return editDensity;
+    }
+
+    /**
+     * @param editDensity share of the words that are replaced, inserted after
+     * or removed in the new document
+     */
+    public CorpusProfile setEditDensity(double editDensity) {
+        this.editDensity = checkShare(editDensity);
+        return this;
+    }
+
+    public double getEditClustering() {
+        return editClustering;
+    }
+
+    /**
+     * @param editClustering probability that the word after an edited word is
+     * edited too: 0 scatters the edits, values close to 1 group them into long
+     * rewritten passages. The edit density is kept.
+     */
+    public CorpusProfile setEditClustering(double editClustering) {
+        if (editClustering < 0 || editClustering >= 1) {
+            throw new IllegalArgumentException("Clustering must be in [0, 1): " + editClustering);
+        }
+        this.editClustering = editClustering;
+        return this;
+    }
+
+    public int getBlockMoves() {
+        return blockMoves;
+    }
+
+    /**
+     * @param blockMoves number of paragraphs or tables moved to another place,
+     * possibly in another segment, in the new document
+     */
+    public CorpusProfile setBlockMoves(int blockMoves) {
+        if (blockMoves < 0) {
+            throw new IllegalArgumentException("Negative number of moves: " + blockMoves);
+        }
+        this.blockMoves = blockMoves;
+        return this;
+    }
+
+    public double getAttributeChanges() {
+        return attributeChanges;
+    }
+
+    /**
+     * @param attributeChanges share of the styled spans whose style or class
+     * changes in the new document while their text stays the same
+     */
+    public CorpusProfile setAttributeChanges(double attributeChanges) {
+        this.attributeChanges = checkShare(attributeChanges);
+        return this;
+    }
+
+    public double getHiddenText() {
+        return hiddenText;
+    }
+
+    /**
+     * @param hiddenText share of the text in display_none spans, which is edited
+     * like the visible text but must not show up in the diff
+     */
+    public CorpusProfile setHiddenText(double hiddenText) {
+        this.hiddenText = checkShare(hiddenText);
+        return this;
+    }
+
+    public double getTables() {
+        return tables;
+    }
+
+    /**
+     * @param tables share of the blocks that are tables instead of paragraphs
+     */
+    public CorpusProfile setTables(double tables) {
+        this.tables = checkShare(tables);
+        return this;
+    }
+
+    public double getNestedTables() {
+        return nestedTables;
+    }
+
+    /**
+     * @param nestedTables share of the tables nested in the cell of another table
+     */
+    public CorpusProfile setNestedTables(double nestedTables) {
+        this.nestedTables = checkShare(nestedTables);
+        return this;
+    }
+
+    private static double checkShare(double share) {
+        if (share < 0 || share > 1) {
+            throw new IllegalArgumentException("Share must be in [0, 1]: " + share);
+        }
+        return share;
+    }
+
+    @Override
+    public String toString() {
+        return "CorpusProfile[tokens=" + tokens + ", segments=" + segments
+            + ", editDensity=" + editDensity + ", editClustering=" + editClustering
+            + ", blockMoves=" + blockMoves + ", attributeChanges=" + attributeChanges
+            + ", hiddenText=" + hiddenText + ", tables=" + tables + ", nestedTables=" + nestedTables + "]";
+    }
+}
@@ -0,0 +1,61 @@
+package org.outerj.daisy.diff.benchmark;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.outerj.daisy.diff.DaisyDiff;
+import org.outerj.daisy.diff.DiffMode;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * The whole pipeline of {@link DaisyDiff#diffHTML}, from parsing the two
+ * documents to generating the output.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class DiffBenchmark {
+
+    /**
+     * Chunk size used by the benchmarks in {@link DiffMode#CHUNKED} mode.
+     */
+    public static final int CHUNK_SIZE = 1000;
+
+    @Param({"2000", "20000"})
+    public int tokens;
+
+    @Param({"FULL", "CHUNKED", "GREEDY"})
+    public DiffMode mode;
+
+    private DocumentPair documents;
+
+    @Setup
+    public void generate() {
+        documents = CorpusGenerator.forBenchmark(tokens);
+    }
+
+    @Benchmark
+    public void diffHTML() throws IOException, SAXException {
+        new DaisyDiff(mode, CHUNK_SIZE, false).diffHTML(
+            new InputSource(new StringReader(documents.getOldDocument())),
+            new InputSource(new StringReader(documents.getNewDocument())),
+            new DefaultHandler(), "diff", Locale.ENGLISH);
+    }
+}
@@ -0,0 +1,57 @@
+package org.outerj.daisy.diff.benchmark;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Locale;
+import org.outerj.daisy.diff.html.TextNodeComparator;
+import org.outerj.daisy.diff.html.dom.DomTreeBuilder;
+import org.outerj.daisy.diff.html.dom.TokenDictionary;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.XMLReaderFactory;
+
+/**
+ * An old and a new version of a generated document.
+ */
+public class DocumentPair {
+
+    private final String oldDocument;
+
+    private final String newDocument;
+
+    public DocumentPair(String oldDocument, String newDocument) {
+        this.oldDocument = oldDocument;
+        this.newDocument = newDocument;
+    }
+
+    public String getOldDocument() {
+        return oldDocument;
+    }
+
+    public String getNewDocument() {
+        return newDocument;
+    }
+
+    /**
+     * Parses both documents with a shared {@link TokenDictionary}, the way
+     * {@link org.outerj.daisy.diff.DaisyDiff} does.
+     *
+     * @return the comparators of the old and the new document
+     */
+    public TextNodeComparator[] parse() throws IOException, SAXException {
+        TokenDictionary tokenDictionary = new TokenDictionary();
+        return new TextNodeComparator[] {
+            new TextNodeComparator(parse(oldDocument, tokenDictionary), Locale.ENGLISH),
+            new TextNodeComparator(parse(newDocument, tokenDictionary), Locale.ENGLISH)
+        };
+    }
+
+    public static DomTreeBuilder parse(String document, TokenDictionary tokenDictionary) throws IOException, SAXException {
+        DomTreeBuilder handler = new DomTreeBuilder(true, tokenDictionary);
+        XMLReader reader = XMLReaderFactory.createXMLReader();
+        reader.setContentHandler(handler);
+        reader.parse(new InputSource(new StringReader(document)));
+        return handler;
+    }
+}
@@ -0,0 +1,55 @@
+package org.outerj.daisy.diff.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.eclipse.compare.rangedifferencer.HTMLDiffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.outerj.daisy.diff.DiffMode;
+import org.outerj.daisy.diff.html.HtmlSaxDiffOutput;
+import org.outerj.daisy.diff.html.TextNodeComparator;
+import org.outerj.daisy.diff.html.dom.TagNode;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Generation of the SAX events of a marked up tree by the
+ * {@link HtmlSaxDiffOutput}. The events go to a handler that ignores them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class OutputBenchmark {
+
+    @Param({"2000", "20000"})
+    public int tokens;
+
+    @Param({"FULL", "CHUNKED", "GREEDY"})
+    public DiffMode mode;
+
+    private TagNode markedUpTree;
+
+    @Setup
+    public void markUp() throws IOException, SAXException {
+        TextNodeComparator[] comparators = CorpusGenerator.forBenchmark(tokens).parse();
+        new HTMLDiffer(node -> markedUpTree = node).diff(comparators[0], comparators[1], mode, DiffBenchmark.CHUNK_SIZE);
+    }
+
+    @Benchmark
+    public TagNode generateOutput() throws SAXException {
+        new HtmlSaxDiffOutput(new DefaultHandler(), "diff").generateOutput(markedUpTree);
+        return markedUpTree;
+    }
+}
@@ -0,0 +1,53 @@
+package org.outerj.daisy.diff.benchmark;
+
+import java.io.IOException;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.outerj.daisy.diff.html.TextNodeComparator;
+import org.outerj.daisy.diff.html.dom.DomTreeBuilder;
+import org.outerj.daisy.diff.html.dom.TokenDictionary;
+import org.xml.sax.SAXException;
+
+/**
+ * Parsing of a document into a tree with {@link DomTreeBuilder}, and the
+ * creation of the {@link TextNodeComparator} over it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ParseBenchmark {
+
+    @Param({"2000", "20000"})
+    public int tokens;
+
+    private String document;
+
+    @Setup
+    public void generate() {
+        document = CorpusGenerator.forBenchmark(tokens).getOldDocument();
+    }
+
+    @Benchmark
+    public DomTreeBuilder parse() throws IOException, SAXException {
+        return DocumentPair.parse(document, new TokenDictionary());
+    }
+
+    @Benchmark
+    public TextNodeComparator parseComparator() throws IOException, SAXException {
+        return new TextNodeComparator(DocumentPair.parse(document, new TokenDictionary()), Locale.ENGLISH);
+    }
+}
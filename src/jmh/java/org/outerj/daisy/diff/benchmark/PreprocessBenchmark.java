@@ -0,0 +1,59 @@
+package org.outerj.daisy.diff.benchmark;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.outerj.daisy.diff.html.dom.DomTreeBuilder;
+import org.outerj.daisy.diff.html.dom.TextNode;
+import org.outerj.daisy.diff.html.dom.TextNodePreprocessor;
+import org.outerj.daisy.diff.html.dom.TokenDictionary;
+import org.xml.sax.SAXException;
+
+/**
+ * The {@link TextNodePreprocessor} passes over a parsed document: removal of
+ * hidden text and collection of the segments.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class PreprocessBenchmark {
+
+    @Param({"2000", "20000"})
+    public int tokens;
+
+    private DomTreeBuilder tree;
+
+    @Setup
+    public void parse() throws IOException, SAXException {
+        String document = CorpusGenerator.forBenchmark(tokens).getOldDocument();
+        tree = DocumentPair.parse(document, new TokenDictionary());
+    }
+
+    @Benchmark
+    public List<TextNode> removeUnprocessableNodes() {
+        List<TextNode> textNodes = new ArrayList<>(tree.getTextNodes());
+        TextNodePreprocessor.removeUnprocessableNodes(tree.getBodyNode(), textNodes);
+        return textNodes;
+    }
+
+    @Benchmark
+    public SortedMap<String, List<TextNode>> collectSegmentNodes() {
+        return new TextNodePreprocessor(tree.getBodyNode(), tree.getTextNodes()).collectSegmentNodes();
+    }
+}
@@ -0,0 +1,158 @@
+package org.eclipse.compare.rangedifferencer;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.outerj.daisy.diff.DiffCheckpoint;
+import org.outerj.daisy.diff.html.dom.TagNode;
+import org.outerj.daisy.diff.html.dom.TextNode;
+
+/**
+ * Finds the differences between two lists of text nodes in two steps. The
+ * text nodes are first grouped into blocks: runs of consecutive nodes below
+ * the same block-level tag (p, li, td, h1...). The blocks are aligned by
+ * their fingerprints with the {@link MyersDifferencer}, and only the words of
+ * blocks that could not be matched are compared one by one.
+ * <p>
+ * The result is expressed in indices of the text nodes, like a word-level
+ * search over the whole lists would be.
+ */
+public final class BlockDifferencer {
+
+    private BlockDifferencer() {
+    }
+
+    /**
+     * @param leftNodes text nodes of the old document
+     * @param left comparator over <code>leftNodes</code> used for the word-level search
+     * @param rightNodes text nodes of the new document
+     * @param right comparator over <code>rightNodes</code> used for the word-level search
+     */
+    public static RangeDifference[] findDifferences(List<TextNode> leftNodes, IRangeComparator left,
+                                                    List<TextNode> rightNodes, IRangeComparator right) {
+        return findDifferences(leftNodes, left, rightNodes, right, DiffCheckpoint.NONE);
+    }
+
+    /**
+     * @param checkpoint called during the alignment of the blocks and the
+     * word-level searches, to stop the search
+     */
+    public static RangeDifference[] findDifferences(List<TextNode> leftNodes, IRangeComparator left,
+                                                    List<TextNode> rightNodes, IRangeComparator right,
+                                                    DiffCheckpoint checkpoint) {
+        BlockComparator leftBlocks = new BlockComparator(leftNodes, left);
+        BlockComparator rightBlocks = new BlockComparator(rightNodes, right);
+        RangeDifference[] blockDifferences = MyersDifferencer.findDifferences(leftBlocks, rightBlocks, checkpoint);
+
+        List<RangeDifference> differences = new ArrayList<RangeDifference>();
+        for (RangeDifference blockDifference : blockDifferences) {
+            int leftStart = leftBlocks.getNodeStart(blockDifference.leftStart());
+            int leftEnd = leftBlocks.getNodeStart(blockDifference.leftEnd());
+            int rightStart = rightBlocks.getNodeStart(blockDifference.rightStart());
+            int rightEnd = rightBlocks.getNodeStart(blockDifference.rightEnd());
+            RangeDifference[] wordDifferences = MyersDifferencer.findDifferences(
+                new RangeComparatorWindow(left, leftStart, leftEnd - leftStart),
+                new RangeComparatorWindow(right, rightStart, rightEnd - rightStart), checkpoint);
+            for (RangeDifference d : wordDifferences) {
+                differences.add(new RangeDifference(d.kind(),
+                    d.rightStart() + rightStart, d.rightLength(),
+                    d.leftStart() + leftStart, d.leftLength()));
+            }
+        }
+        return differences.toArray(new RangeDifference[differences.size()]);
+    }
+
+    /**
+     * Compares the blocks of two documents. Blocks are equal when their
+     * fingerprints match and all their words are equal.
+     */
+    private static class BlockComparator implements IRangeComparator {
+
+        private final IRangeComparator words;
+
+        /**
+         * Index of the first text node of every block, followed by the total
+         * number of text nodes.
+         */
+        private final int[] starts;
+
+        private final long[] fingerprints;
+
+        BlockComparator(List<TextNode> textNodes, IRangeComparator words) {
+            this.words = words;
+            int[] blockStarts = new int[textNodes.size() + 1];
+            long[] blockFingerprints = new long[textNodes.size()];
+            int count = 0;
+            TagNode lastParent = null;
+            TagNode lastBlock = null;
+            long fingerprint = 0;
+            for (int i = 0; i < textNodes.size(); i++) {
+                TextNode textNode = textNodes.get(i);
+                TagNode parent = textNode.getParent();
+                TagNode block = parent == lastParent ? lastBlock : getBlock(parent);
+                if (i == 0 || block != lastBlock) {
+                    if (i > 0) {
+                        blockFingerprints[count - 1] = fingerprint;
+                    }
+                    blockStarts[count++] = i;
+                    fingerprint = 17;
+                }
+                fingerprint = fingerprint * 31 + textNode.getText().hashCode();
+                lastParent = parent;
+                lastBlock = block;
+            }
+            if (count > 0) {
+                blockFingerprints[count - 1] = fingerprint;
+            }
+            blockStarts[count] = textNodes.size();
+            starts = new int[count + 1];
+            System.arraycopy(blockStarts, 0, starts, 0, count + 1);
+            fingerprints = new long[count];
+            System.arraycopy(blockFingerprints, 0, fingerprints, 0, count);
+        }
+
+        private static TagNode getBlock(TagNode parent) {
+            TagNode block = parent;
+            while (block != null && !block.isBlockLevel()) {
+                block = block.getParent();
+            }
+            return block;
+        }
+
+        int getNodeStart(int block) {
+            return starts[block];
+        }
+
+        @Override
+        public int getRangeCount() {
+            return fingerprints.length;
+        }
+
+        @Override
+        public boolean rangesEqual(int thisIndex, IRangeComparator other, int otherIndex) {
+            if (!(other instanceof BlockComparator)) {
+                return false;
+            }
+            BlockComparator otherBlocks = (BlockComparator) other;
+            if (fingerprints[thisIndex] != otherBlocks.fingerprints[otherIndex]) {
+                return false;
+            }
+            int start = starts[thisIndex];
+            int length = starts[thisIndex + 1] - start;
+            int otherStart = otherBlocks.starts[otherIndex];
+            if (otherBlocks.starts[otherIndex + 1] - otherStart != length) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (!words.rangesEqual(start + i, otherBlocks.words, otherStart + i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public boolean skipRangeComparison(int length, int maxLength, IRangeComparator other) {
+            return false;
+        }
+    }
+}
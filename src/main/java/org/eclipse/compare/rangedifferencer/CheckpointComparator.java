@@ -0,0 +1,57 @@
+package org.eclipse.compare.rangedifferencer;
+
+import org.outerj.daisy.diff.DiffCheckpoint;
+
+/**
+ * Calls a {@link DiffCheckpoint} regularly while another comparator is
+ * compared, so that difference searches which do not check it themselves,
+ * like the LCS of {@link RangeDifferencer}, can be stopped. Both sides of a
+ * comparison must be wrapped.
+ */
+public class CheckpointComparator implements IRangeComparator {
+
+    /**
+     * The checkpoint is called once every 1024 comparisons.
+     */
+    private static final int CHECK_INTERVAL_MASK = 0x3FF;
+
+    private final IRangeComparator comparator;
+
+    private final DiffCheckpoint checkpoint;
+
+    private long comparisons;
+
+    public CheckpointComparator(IRangeComparator comparator, DiffCheckpoint checkpoint) {
+        this.comparator = comparator;
+        this.checkpoint = checkpoint;
+    }
+
+    @Override
+    public int getRangeCount() {
+        return comparator.getRangeCount();
+    }
+
+    @Override
+    public boolean rangesEqual(int thisIndex, IRangeComparator other, int otherIndex) {
+        if ((++comparisons & CHECK_INTERVAL_MASK) == 0) {
+            checkpoint.check();
+        }
+        if (!(other instanceof CheckpointComparator)) {
+            return false;
+        }
+        return comparator.rangesEqual(thisIndex, ((CheckpointComparator) other).comparator, otherIndex);
+    }
+
+    @Override
+    public boolean skipRangeComparison(int length, int maxLength, IRangeComparator other) {
+        return other instanceof CheckpointComparator
+            && comparator.skipRangeComparison(length, maxLength, ((CheckpointComparator) other).comparator);
+    }
+
+    /**
+     * @return the number of calls to {@link #rangesEqual} on this comparator
+     */
+    public long getComparisons() {
+        return comparisons;
+    }
+}
@@ -15,15 +15,26 @@
  */
 package org.eclipse.compare.rangedifferencer;
 
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import org.apache.commons.lang3.tuple.Pair;
 import org.eclipse.compare.internal.LCSSettings;
+import org.outerj.daisy.diff.Deadline;
+import org.outerj.daisy.diff.DeadlineExceededException;
+import org.outerj.daisy.diff.DiffCheckpoint;
 import org.outerj.daisy.diff.DiffMode;
+import org.outerj.daisy.diff.DiffReport;
 import org.outerj.daisy.diff.html.ChunkCreator;
 import org.outerj.daisy.diff.html.IterableTextNodeComparator;
 import org.outerj.daisy.diff.html.TextNodeComparator;
+import org.outerj.daisy.diff.html.TokenComparator;
 import org.outerj.daisy.diff.html.dom.TextNode;
+import org.outerj.daisy.diff.metrics.DiffMetricsListener;
 import org.outerj.daisy.diff.output.DiffOutput;
 import org.outerj.daisy.diff.output.Differ;
 import org.slf4j.Logger;
@@ -33,77 +44,415 @@ import org.xml.sax.SAXException;
 public class HTMLDiffer implements Differ {
     private static final Logger LOGGER = LoggerFactory.getLogger(HTMLDiffer.class);
 
+    /**
+     * Shares of the time budget after which the searches of the whole
+     * documents, of the chunks and of the blocks give up. The rest of the
+     * budget is left for the markup.
+     */
+    private static final double FULL_SEARCH_SHARE = 0.4;
+    private static final double CHUNKED_SEARCH_SHARE = 0.6;
+    private static final double BLOCK_SEARCH_SHARE = 0.7;
+
     private DiffOutput output;
 
+    private ExecutorService executor;
+
+    private DiffMetricsListener metricsListener = DiffMetricsListener.NONE;
+
+    private DiffCheckpoint checkpoint = DiffCheckpoint.NONE;
+
     public HTMLDiffer(DiffOutput dm) {
         output = dm;
     }
 
+    /**
+     * @param executor runs the difference searches of the chunks in
+     * {@link DiffMode#CHUNKED} mode concurrently; <code>null</code> searches
+     * them one after another on the calling thread.
+     */
+    public HTMLDiffer(DiffOutput dm, ExecutorService executor) {
+        output = dm;
+        this.executor = executor;
+    }
+
+    /**
+     * @param metricsListener is told about every chunk in {@link DiffMode#CHUNKED} mode
+     */
+    public HTMLDiffer(DiffOutput dm, ExecutorService executor, DiffMetricsListener metricsListener) {
+        this(dm, executor);
+        this.metricsListener = metricsListener;
+    }
+
+    /**
+     * @param checkpoint called between the chunks, during the searches and
+     * before every difference is marked up, so that the diff can be stopped.
+     * Exceptions it throws abort the diff, except for
+     * {@link DeadlineExceededException}s which make it degrade.
+     */
+    public void setCheckpoint(DiffCheckpoint checkpoint) {
+        this.checkpoint = checkpoint;
+    }
+
     /**
      * {@inheritDoc}
      */
     public void diff(TextNodeComparator leftComparator, TextNodeComparator rightComparator, DiffMode mode, int chunkSize) throws SAXException {
-        long findDiffStart = System.currentTimeMillis();
-        LOGGER.info("Diff started in " + mode.name() + " mode");
-        int diffCount;
+        diff(leftComparator, rightComparator, mode, chunkSize, new DiffReport());
+    }
+
+    /**
+     * Compares the trees like {@link #diff(TextNodeComparator, TextNodeComparator, DiffMode, int)}
+     * and records the timings and counters of the phases in the given report.
+     */
+    public void diff(TextNodeComparator leftComparator, TextNodeComparator rightComparator, DiffMode mode, int chunkSize,
+                     DiffReport report) throws SAXException {
+        diff(leftComparator, rightComparator, mode, chunkSize, report, null);
+    }
+
+    /**
+     * Compares the trees like {@link #diff(TextNodeComparator, TextNodeComparator, DiffMode, int, DiffReport)}
+     * within the given deadline. Each search gets a share of the time budget
+     * and falls back to a cheaper one when it runs out: a search of the whole
+     * documents falls back to a {@link DiffMode#CHUNKED} search if the documents
+     * have several chunks, the search of a chunk or document to a
+     * {@link DiffMode#BLOCK} search, and that one to replacing the whole chunk
+     * or document. When the budget runs out during markup, the differences
+     * not marked up yet are replaced by a single change. Degraded results are
+     * flagged in the report.
+     *
+     * @param deadline <code>null</code> for no time limit
+     */
+    public void diff(TextNodeComparator leftComparator, TextNodeComparator rightComparator, DiffMode mode, int chunkSize,
+                     DiffReport report, Deadline deadline) throws SAXException {
+        report.setMode(mode);
+        report.setOldTokens(leftComparator.getTextNodes().size());
+        report.setNewTokens(rightComparator.getTextNodes().size());
         switch (mode) {
             case CHUNKED:
-                diffCount = chunkedDiff(leftComparator, rightComparator, chunkSize);
+                chunkedDiff(leftComparator, rightComparator, createChunks(leftComparator, rightComparator, chunkSize, report),
+                    report, deadline);
                 break;
             case FULL:
-                diffCount = fullDiff(leftComparator, rightComparator, false);
-                break;
             case GREEDY:
-                diffCount = fullDiff(leftComparator, rightComparator, true);
+            case MYERS:
+            case BLOCK:
+                fullDiff(leftComparator, rightComparator, mode, chunkSize, report, deadline);
                 break;
             default:
                 throw new RuntimeException("Unsupported");
 
         }
-        LOGGER.info("Difference search completed in " + (System.currentTimeMillis() - findDiffStart));
-        LOGGER.info("Total found " + diffCount + " differences");
+        report.addAncestorComparisons(rightComparator.getAncestorComparisons());
+        if (report.isDegraded()) {
+            LOGGER.warn("Found {} differences in {} mode, degraded to meet the deadline", report.getDifferences(), mode);
+        } else {
+            LOGGER.info("Found {} differences in {} mode", report.getDifferences(), mode);
+        }
+
+        generateOutput(rightComparator, report);
+    }
 
+    /**
+     * Outputs the tree of the comparator without searching or marking up any
+     * differences, for documents known to be the same as the old ones, see
+     * {@link TextNodeComparator#hasSameContent(TextNodeComparator)}.
+     */
+    public void outputUnchanged(TextNodeComparator rightComparator, DiffMode mode, DiffReport report) throws SAXException {
+        report.setMode(mode);
+        report.setIdentical(true);
+        report.setOldTokens(rightComparator.getTextNodes().size());
+        report.setNewTokens(rightComparator.getTextNodes().size());
+        LOGGER.info("Found no differences in {} mode, the documents are identical", mode);
+        generateOutput(rightComparator, report);
+    }
+
+    private void generateOutput(TextNodeComparator rightComparator, DiffReport report) throws SAXException {
+        long expansionStart = System.nanoTime();
         rightComparator.expandWhiteSpace();
+        report.addWhiteSpaceExpansionNanos(System.nanoTime() - expansionStart);
+        long outputStart = System.nanoTime();
         output.generateOutput(rightComparator.getBodyNode());
+        report.addOutputNanos(System.nanoTime() - outputStart);
     }
 
-    private int chunkedDiff(TextNodeComparator leftComparator, TextNodeComparator rightComparator, int chunkSize) {
-        int diffCount = 0;
+    private List<Pair<List<TextNode>, List<TextNode>>> createChunks(TextNodeComparator leftComparator, TextNodeComparator rightComparator,
+                                                                   int chunkSize, DiffReport report) {
+        long chunkingStart = System.nanoTime();
         ChunkCreator chunkCreator = new ChunkCreator(leftComparator, rightComparator);
-        for (Pair<List<TextNode>, List<TextNode>> diffPair : chunkCreator.getChunks(chunkSize)) {
-            RangeDifference[] differences = RangeDifferencer.findDifferences(
-                new LCSSettings(),
-                new IterableTextNodeComparator(diffPair.getLeft()),
-                new IterableTextNodeComparator(diffPair.getRight()));
-            List<RangeDifference> diffToProcess = preProcess(differences);
-            leftComparator.setTextNodes(diffPair.getLeft());
-            rightComparator.setTextNodes(diffPair.getRight());
-            diffCount += diffToProcess.size();
-            processDifferences(leftComparator, rightComparator, diffToProcess);
-        }
-        return diffCount;
-    }
-
-    private int fullDiff(TextNodeComparator leftComparator, TextNodeComparator rightComparator, boolean greedy) {
-        int diffCount;
+        List<Pair<List<TextNode>, List<TextNode>>> chunks = chunkCreator.hasSegments()
+            ? new ArrayList<>(chunkCreator.getChunks(chunkSize))
+            : null;
+        report.addChunkingNanos(System.nanoTime() - chunkingStart);
+        return chunks;
+    }
+
+    /**
+     * The searches of the chunks are independent and may run concurrently, but
+     * marking up the results changes the trees and assigns the modification
+     * IDs, so it is done afterwards in chunk order on the calling thread.
+     */
+    private void chunkedDiff(TextNodeComparator leftComparator, TextNodeComparator rightComparator,
+                             List<Pair<List<TextNode>, List<TextNode>>> chunks, DiffReport report, Deadline deadline) {
+        if (chunks == null) {
+            throw new NoSuchElementException("The documents have no segments to split into chunks");
+        }
+        report.addChunks(chunks.size());
+        List<Future<SearchResult>> searches = new ArrayList<>(chunks.size());
+        if (executor != null) {
+            for (Pair<List<TextNode>, List<TextNode>> diffPair : chunks) {
+                searches.add(executor.submit(() -> findChunkDifferences(diffPair, deadline)));
+            }
+        }
+        try {
+            for (int i = 0; i < chunks.size(); i++) {
+                checkpoint.check();
+                Pair<List<TextNode>, List<TextNode>> diffPair = chunks.get(i);
+                SearchResult search = executor != null
+                    ? getSearchResult(searches.get(i))
+                    : findChunkDifferences(diffPair, deadline);
+                search.addTo(report);
+                metricsListener.chunkCreated(diffPair.getLeft().size(), diffPair.getRight().size());
+                leftComparator.setTextNodes(diffPair.getLeft());
+                rightComparator.setTextNodes(diffPair.getRight());
+                markUp(leftComparator, rightComparator, search.differences, report, deadline);
+            }
+        } finally {
+            for (Future<SearchResult> search : searches) {
+                search.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * Searches the differences of one chunk created by the {@link ChunkCreator}
+     * and merges the nearby ones, ready for {@link #processDifferences}.
+     *
+     * @param deadline <code>null</code> for no time limit
+     */
+    SearchResult findChunkDifferences(Pair<List<TextNode>, List<TextNode>> diffPair, Deadline deadline) {
+        long start = System.nanoTime();
+        List<TextNode> leftNodes = diffPair.getLeft();
+        List<TextNode> rightNodes = diffPair.getRight();
+        try {
+            DiffCheckpoint stage = getStage(deadline, CHUNKED_SEARCH_SHARE);
+            IRangeComparator left = searchComparator(new IterableTextNodeComparator(leftNodes), leftNodes, stage);
+            IRangeComparator right = searchComparator(new IterableTextNodeComparator(rightNodes), rightNodes, stage);
+            RangeDifference[] differences = RangeDifferencer.findDifferences(new LCSSettings(), left, right);
+            return new SearchResult(preProcess(differences), System.nanoTime() - start, getComparisons(left, right), false);
+        } catch (DeadlineExceededException e) {
+            return findFallbackDifferences(leftNodes, rightNodes, deadline, start);
+        }
+    }
+
+    private static SearchResult getSearchResult(Future<SearchResult> search) {
+        try {
+            return search.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the difference search", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    private void fullDiff(TextNodeComparator leftComparator, TextNodeComparator rightComparator, DiffMode mode, int chunkSize,
+                          DiffReport report, Deadline deadline) {
+        long searchStart = System.nanoTime();
+        SearchResult search;
+        try {
+            search = findDocumentDifferences(leftComparator, rightComparator, mode, deadline);
+        } catch (DeadlineExceededException e) {
+            if (mode != DiffMode.BLOCK) {
+                List<Pair<List<TextNode>, List<TextNode>>> chunks = createChunks(leftComparator, rightComparator, chunkSize, report);
+                if (chunks != null && chunks.size() > 1) {
+                    report.setDegraded(true);
+                    report.addSearchNanos(System.nanoTime() - searchStart);
+                    chunkedDiff(leftComparator, rightComparator, chunks, report, deadline);
+                    return;
+                }
+            }
+            if (mode == DiffMode.BLOCK) {
+                // the fallback search would run out of the same share again
+                search = replaceRange(leftComparator.getTextNodes(), rightComparator.getTextNodes(), searchStart);
+            } else {
+                search = findFallbackDifferences(leftComparator.getTextNodes(), rightComparator.getTextNodes(), deadline, searchStart);
+            }
+        }
+        report.addChunks(1);
+        search.addTo(report);
+        markUp(leftComparator, rightComparator, search.differences, report, deadline);
+    }
+
+    /**
+     * Searches the differences of the whole documents in one of the modes that
+     * do not split them into chunks and merges the nearby ones, ready for
+     * {@link #processDifferences}.
+     *
+     * @param deadline <code>null</code> for no time limit
+     * @throws DeadlineExceededException if the search ran out of its share
+     * of the time budget
+     */
+    SearchResult findDocumentDifferences(TextNodeComparator leftComparator, TextNodeComparator rightComparator, DiffMode mode,
+                                         Deadline deadline) {
+        long start = System.nanoTime();
+        DiffCheckpoint checkpoint = getStage(deadline, mode == DiffMode.BLOCK ? BLOCK_SEARCH_SHARE : FULL_SEARCH_SHARE);
+        IRangeComparator left = searchComparator(leftComparator, leftComparator.getTextNodes(), checkpoint);
+        IRangeComparator right = searchComparator(rightComparator, rightComparator.getTextNodes(), checkpoint);
+        RangeDifference[] differences;
+        if (mode == DiffMode.BLOCK) {
+            differences = BlockDifferencer.findDifferences(
+                leftComparator.getTextNodes(), left, rightComparator.getTextNodes(), right, checkpoint);
+        } else {
+            differences = findTrimmedDifferences(mode, left, right, checkpoint);
+        }
+        return new SearchResult(preProcess(differences), System.nanoTime() - start, getComparisons(left, right), false);
+    }
+
+    /**
+     * Searches the differences block by block, or if that runs out of time
+     * too, replaces the whole range.
+     *
+     * @param start when the search that ran out of time started
+     */
+    private SearchResult findFallbackDifferences(List<TextNode> leftNodes, List<TextNode> rightNodes, Deadline deadline, long start) {
+        try {
+            DiffCheckpoint checkpoint = getStage(deadline, BLOCK_SEARCH_SHARE);
+            IRangeComparator left = searchComparator(new IterableTextNodeComparator(leftNodes), leftNodes, checkpoint);
+            IRangeComparator right = searchComparator(new IterableTextNodeComparator(rightNodes), rightNodes, checkpoint);
+            RangeDifference[] differences = BlockDifferencer.findDifferences(leftNodes, left, rightNodes, right, checkpoint);
+            return new SearchResult(preProcess(differences), System.nanoTime() - start, getComparisons(left, right), true);
+        } catch (DeadlineExceededException e) {
+            return replaceRange(leftNodes, rightNodes, start);
+        }
+    }
+
+    /**
+     * @return a single change replacing all the left nodes by all the right ones
+     */
+    private static SearchResult replaceRange(List<TextNode> leftNodes, List<TextNode> rightNodes, long start) {
+        List<RangeDifference> differences = new ArrayList<RangeDifference>(1);
+        if (!leftNodes.isEmpty() || !rightNodes.isEmpty()) {
+            differences.add(new RangeDifference(RangeDifference.CHANGE, 0, rightNodes.size(), 0, leftNodes.size()));
+        }
+        return new SearchResult(differences, System.nanoTime() - start, 0, true);
+    }
+
+    /**
+     * @return the checkpoint of a search that may use the given share of the
+     * time budget
+     */
+    private DiffCheckpoint getStage(Deadline deadline, double share) {
+        return checkpoint.and(deadline != null ? deadline.getStage(share) : DiffCheckpoint.NONE);
+    }
+
+    /**
+     * Text nodes tokenized by the {@link org.outerj.daisy.diff.html.dom.DomTreeBuilder}s
+     * are searched by their token ids; other nodes fall back to text comparison.
+     * Both comparators call the checkpoint while they are compared.
+     */
+    private IRangeComparator searchComparator(IRangeComparator textComparator, List<TextNode> textNodes, DiffCheckpoint checkpoint) {
+        TokenComparator tokenComparator = TokenComparator.forTextNodes(textNodes);
+        if (tokenComparator == null) {
+            return new CheckpointComparator(textComparator, checkpoint);
+        }
+        tokenComparator.setCheckpoint(checkpoint);
+        return tokenComparator;
+    }
+
+    private static long getComparisons(IRangeComparator left, IRangeComparator right) {
+        return getComparisons(left) + getComparisons(right);
+    }
+
+    private static long getComparisons(IRangeComparator comparator) {
+        if (comparator instanceof CheckpointComparator) {
+            return ((CheckpointComparator) comparator).getComparisons();
+        }
+        return comparator instanceof TokenComparator ? ((TokenComparator) comparator).getComparisons() : 0;
+    }
+
+    /**
+     * Runs the difference search only on the window left after stripping the
+     * identical leading and trailing ranges, and shifts the results back to
+     * the indices of the full comparators.
+     */
+    private RangeDifference[] findTrimmedDifferences(DiffMode mode, IRangeComparator left, IRangeComparator right,
+                                                     DiffCheckpoint checkpoint) {
+        int leftCount = left.getRangeCount();
+        int rightCount = right.getRangeCount();
+        int prefix = 0;
+        while (prefix < leftCount && prefix < rightCount && left.rangesEqual(prefix, right, prefix)) {
+            prefix++;
+        }
+        int suffix = 0;
+        while (suffix < leftCount - prefix && suffix < rightCount - prefix
+            && left.rangesEqual(leftCount - 1 - suffix, right, rightCount - 1 - suffix)) {
+            suffix++;
+        }
+        if (prefix == 0 && suffix == 0) {
+            return findDifferences(mode, left, right, checkpoint);
+        }
+        RangeDifference[] differences = findDifferences(mode,
+            new RangeComparatorWindow(left, prefix, leftCount - prefix - suffix),
+            new RangeComparatorWindow(right, prefix, rightCount - prefix - suffix), checkpoint);
+        for (int i = 0; i < differences.length; i++) {
+            RangeDifference d = differences[i];
+            differences[i] = new RangeDifference(d.kind(),
+                d.rightStart() + prefix, d.rightLength(),
+                d.leftStart() + prefix, d.leftLength(),
+                d.ancestorStart(), d.ancestorLength());
+        }
+        return differences;
+    }
+
+    private RangeDifference[] findDifferences(DiffMode mode, IRangeComparator left, IRangeComparator right,
+                                              DiffCheckpoint checkpoint) {
+        if (mode == DiffMode.MYERS) {
+            return MyersDifferencer.findDifferences(left, right, checkpoint);
+        }
         LCSSettings settings = new LCSSettings();
-        if (greedy) {
+        if (mode == DiffMode.GREEDY) {
             settings.setTooLong(Integer.MAX_VALUE);
             settings.setUseGreedyMethod(true);
         }
-        RangeDifference[] differences = RangeDifferencer.findDifferences(settings, leftComparator, rightComparator);
-        List<RangeDifference> diffToProcess = preProcess(differences);
-        diffCount = diffToProcess.size();
-        processDifferences(leftComparator, rightComparator, diffToProcess);
-        return diffCount;
+        return RangeDifferencer.findDifferences(settings, left, right);
     }
 
-    private void processDifferences(TextNodeComparator leftComparator, TextNodeComparator rightComparator, List<RangeDifference> processedDifferences) {
+    private void markUp(TextNodeComparator leftComparator, TextNodeComparator rightComparator, List<RangeDifference> differences,
+                        DiffReport report, Deadline deadline) {
+        long markupStart = System.nanoTime();
+        if (!processDifferences(leftComparator, rightComparator, differences,
+            checkpoint.and(deadline != null ? deadline : DiffCheckpoint.NONE))) {
+            report.setDegraded(true);
+        }
+        report.addMarkupNanos(System.nanoTime() - markupStart);
+    }
+
+    /**
+     * Marks up the trees of the comparators with the given differences, which
+     * must be ordered by position. If the checkpoint throws a
+     * {@link DeadlineExceededException} before a difference, everything from
+     * there on is marked up as a single change.
+     *
+     * @return <code>false</code> if the markup was cut short by the checkpoint
+     */
+    boolean processDifferences(TextNodeComparator leftComparator, TextNodeComparator rightComparator,
+                               List<RangeDifference> processedDifferences, DiffCheckpoint checkpoint) {
         int currentIndexLeft = 0;
         int currentIndexRight = 0;
-        int counter = 0;
         for (RangeDifference d : processedDifferences) {
-            long iterationStart = System.currentTimeMillis();
+            try {
+                checkpoint.check();
+            } catch (DeadlineExceededException e) {
+                replaceRest(leftComparator, rightComparator, currentIndexLeft, currentIndexRight);
+                return false;
+            }
             if (d.leftStart() > currentIndexLeft) {
                 rightComparator.handlePossibleChangedPart(currentIndexLeft, d.leftStart(), currentIndexRight, d.rightStart(), leftComparator);
             }
@@ -114,12 +463,22 @@ public class HTMLDiffer implements Differ {
 
             currentIndexLeft = d.leftEnd();
             currentIndexRight = d.rightEnd();
-            LOGGER.info("Iteration complete in " + (System.currentTimeMillis() - iterationStart) + " ms; number " + counter++);
         }
         if (currentIndexLeft < leftComparator.getRangeCount()) {
             rightComparator.handlePossibleChangedPart(currentIndexLeft, leftComparator.getRangeCount(),
                 currentIndexRight, rightComparator.getRangeCount(), leftComparator);
         }
+        return true;
+    }
+
+    private static void replaceRest(TextNodeComparator leftComparator, TextNodeComparator rightComparator,
+                                    int leftStart, int rightStart) {
+        int leftEnd = leftComparator.getRangeCount();
+        int rightEnd = rightComparator.getRangeCount();
+        if (leftEnd > leftStart) {
+            rightComparator.markAsDeleted(leftStart, leftEnd, leftComparator, rightStart, rightEnd);
+        }
+        rightComparator.markAsNew(rightStart, rightEnd);
     }
 
     private List<RangeDifference> preProcess(RangeDifference[] differences) {
@@ -163,6 +522,40 @@ public class HTMLDiffer implements Differ {
         return newRanges;
     }
 
+    /**
+     * The differences found in a chunk or a whole document, with the cost of
+     * finding them.
+     */
+    static class SearchResult {
+
+        final List<RangeDifference> differences;
+
+        final long nanos;
+
+        final long comparisons;
+
+        /**
+         * Whether the search fell back to a coarser one to meet the deadline.
+         */
+        final boolean degraded;
+
+        SearchResult(List<RangeDifference> differences, long nanos, long comparisons, boolean degraded) {
+            this.differences = differences;
+            this.nanos = nanos;
+            this.comparisons = comparisons;
+            this.degraded = degraded;
+        }
+
+        void addTo(DiffReport report) {
+            report.addSearchNanos(nanos);
+            report.addRangeComparisons(comparisons);
+            report.addDifferences(differences.size());
+            if (degraded) {
+                report.setDegraded(true);
+            }
+        }
+    }
+
     public static double score(int... numbers) {
         if ((numbers[0] == 0 && numbers[1] == 0) || (numbers[2] == 0 && numbers[3] == 0))
             return 0;
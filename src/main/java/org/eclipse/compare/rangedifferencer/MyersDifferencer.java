@@ -0,0 +1,211 @@
+package org.eclipse.compare.rangedifferencer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.outerj.daisy.diff.DiffCheckpoint;
+
+/**
+ * Finds the differences between two {@link IRangeComparator}s using the
+ * O(ND) algorithm of Eugene W. Myers ("An O(ND) Difference Algorithm and Its
+ * Variations", 1986) with the linear space refinement: the middle snake of the
+ * edit graph is located by running the greedy search from both ends at once,
+ * and the problem is split recursively around it.
+ * <p>
+ * The running time depends on the number of edits D rather than on the
+ * product of the range lengths, so nearly identical documents are compared
+ * almost in linear time. The result uses the same conventions as
+ * {@link RangeDifferencer#findDifferences(IRangeComparator, IRangeComparator)}:
+ * maximal differing ranges of kind {@link RangeDifference#CHANGE}, ordered by
+ * position, where "left" refers to the first comparator.
+ */
+public final class MyersDifferencer {
+
+    private static final RangeDifference[] EMPTY_RESULT = new RangeDifference[0];
+
+    private final IRangeComparator left;
+
+    private final IRangeComparator right;
+
+    private final DiffCheckpoint checkpoint;
+
+    private final List<RangeDifference> differences = new ArrayList<RangeDifference>();
+
+    /**
+     * Forward and reverse furthest reaching paths, reused by every bisection.
+     */
+    private int[] forward;
+
+    private int[] reverse;
+
+    private MyersDifferencer(IRangeComparator left, IRangeComparator right, DiffCheckpoint checkpoint) {
+        this.left = left;
+        this.right = right;
+        this.checkpoint = checkpoint;
+    }
+
+    public static RangeDifference[] findDifferences(IRangeComparator left, IRangeComparator right) {
+        return findDifferences(left, right, DiffCheckpoint.NONE);
+    }
+
+    /**
+     * @param checkpoint called once for every edit distance explored by a
+     * bisection, to stop the search
+     */
+    public static RangeDifference[] findDifferences(IRangeComparator left, IRangeComparator right, DiffCheckpoint checkpoint) {
+        MyersDifferencer differencer = new MyersDifferencer(left, right, checkpoint);
+        differencer.compare(0, left.getRangeCount(), 0, right.getRangeCount());
+        if (differencer.differences.isEmpty()) {
+            return EMPTY_RESULT;
+        }
+        return differencer.differences.toArray(new RangeDifference[differencer.differences.size()]);
+    }
+
+    private void compare(int leftStart, int leftEnd, int rightStart, int rightEnd) {
+        // common prefix
+        while (leftStart < leftEnd && rightStart < rightEnd && rangesEqual(leftStart, rightStart)) {
+            leftStart++;
+            rightStart++;
+        }
+        // common suffix
+        while (leftStart < leftEnd && rightStart < rightEnd && rangesEqual(leftEnd - 1, rightEnd - 1)) {
+            leftEnd--;
+            rightEnd--;
+        }
+        if (leftStart == leftEnd || rightStart == rightEnd) {
+            addDifference(leftStart, leftEnd, rightStart, rightEnd);
+            return;
+        }
+        bisect(leftStart, leftEnd, rightStart, rightEnd);
+    }
+
+    /**
+     * Locates the middle snake of the given window and recurses on both
+     * halves around it.
+     */
+    private void bisect(int leftStart, int leftEnd, int rightStart, int rightEnd) {
+        int leftLength = leftEnd - leftStart;
+        int rightLength = rightEnd - rightStart;
+        int maxD = (leftLength + rightLength + 1) / 2;
+        int offset = maxD;
+        int size = 2 * maxD + 2;
+        ensureCapacity(size);
+        Arrays.fill(forward, 0, size, -1);
+        Arrays.fill(reverse, 0, size, -1);
+        forward[offset + 1] = 0;
+        reverse[offset + 1] = 0;
+
+        int delta = leftLength - rightLength;
+        // if the total number of elements is odd, the front path collides with the reverse path
+        boolean front = (delta & 1) != 0;
+        // diagonals that ran off the edge of the graph are not explored again
+        int k1start = 0;
+        int k1end = 0;
+        int k2start = 0;
+        int k2end = 0;
+        for (int d = 0; d < maxD; d++) {
+            checkpoint.check();
+            for (int k1 = -d + k1start; k1 <= d - k1end; k1 += 2) {
+                int k1Offset = offset + k1;
+                int x1;
+                if (k1 == -d || (k1 != d && forward[k1Offset - 1] < forward[k1Offset + 1])) {
+                    x1 = forward[k1Offset + 1];
+                } else {
+                    x1 = forward[k1Offset - 1] + 1;
+                }
+                int y1 = x1 - k1;
+                while (x1 < leftLength && y1 < rightLength && rangesEqual(leftStart + x1, rightStart + y1)) {
+                    x1++;
+                    y1++;
+                }
+                forward[k1Offset] = x1;
+                if (x1 > leftLength) {
+                    k1end += 2;
+                } else if (y1 > rightLength) {
+                    k1start += 2;
+                } else if (front) {
+                    int k2Offset = offset + delta - k1;
+                    if (k2Offset >= 0 && k2Offset < size && reverse[k2Offset] != -1) {
+                        int x2 = leftLength - reverse[k2Offset];
+                        if (x1 >= x2) {
+                            split(leftStart, leftEnd, rightStart, rightEnd, x1, y1);
+                            return;
+                        }
+                    }
+                }
+            }
+
+            for (int k2 = -d + k2start; k2 <= d - k2end; k2 += 2) {
+                int k2Offset = offset + k2;
+                int x2;
+                if (k2 == -d || (k2 != d && reverse[k2Offset - 1] < reverse[k2Offset + 1])) {
+                    x2 = reverse[k2Offset + 1];
+                } else {
+                    x2 = reverse[k2Offset - 1] + 1;
+                }
+                int y2 = x2 - k2;
+                while (x2 < leftLength && y2 < rightLength
+                    && rangesEqual(leftEnd - x2 - 1, rightEnd - y2 - 1)) {
+                    x2++;
+                    y2++;
+                }
+                reverse[k2Offset] = x2;
+                if (x2 > leftLength) {
+                    k2end += 2;
+                } else if (y2 > rightLength) {
+                    k2start += 2;
+                } else if (!front) {
+                    int k1Offset = offset + delta - k2;
+                    if (k1Offset >= 0 && k1Offset < size && forward[k1Offset] != -1) {
+                        int x1 = forward[k1Offset];
+                        int y1 = offset + x1 - k1Offset;
+                        if (x1 >= leftLength - x2) {
+                            split(leftStart, leftEnd, rightStart, rightEnd, x1, y1);
+                            return;
+                        }
+                    }
+                }
+            }
+        }
+        // no common element at all
+        addDifference(leftStart, leftEnd, rightStart, rightEnd);
+    }
+
+    private void split(int leftStart, int leftEnd, int rightStart, int rightEnd, int x, int y) {
+        compare(leftStart, leftStart + x, rightStart, rightStart + y);
+        compare(leftStart + x, leftEnd, rightStart + y, rightEnd);
+    }
+
+    private void ensureCapacity(int size) {
+        if (forward == null || forward.length < size) {
+            forward = new int[size];
+            reverse = new int[size];
+        }
+    }
+
+    private boolean rangesEqual(int leftIndex, int rightIndex) {
+        return left.rangesEqual(leftIndex, right, rightIndex);
+    }
+
+    /**
+     * Records a differing range, joining it with the previous one when the
+     * two touch, since halves are always reported from left to right.
+     */
+    private void addDifference(int leftStart, int leftEnd, int rightStart, int rightEnd) {
+        if (leftStart == leftEnd && rightStart == rightEnd) {
+            return;
+        }
+        if (!differences.isEmpty()) {
+            RangeDifference last = differences.get(differences.size() - 1);
+            if (last.leftEnd() == leftStart && last.rightEnd() == rightStart) {
+                differences.set(differences.size() - 1, new RangeDifference(RangeDifference.CHANGE,
+                    last.rightStart(), rightEnd - last.rightStart(),
+                    last.leftStart(), leftEnd - last.leftStart()));
+                return;
+            }
+        }
+        differences.add(new RangeDifference(RangeDifference.CHANGE,
+            rightStart, rightEnd - rightStart,
+            leftStart, leftEnd - leftStart));
+    }
+}
@@ -0,0 +1,49 @@
+package org.eclipse.compare.rangedifferencer;
+
+/**
+ * Exposes a contiguous part of another {@link IRangeComparator} as a
+ * comparator of its own, so that a difference search can be limited to the
+ * part of two documents that actually differs.
+ */
+public class RangeComparatorWindow implements IRangeComparator {
+
+    private final IRangeComparator comparator;
+
+    private final int start;
+
+    private final int length;
+
+    /**
+     * @param comparator the comparator to take the ranges from
+     * @param start index in <code>comparator</code> of the first range of the window
+     * @param length number of ranges in the window
+     */
+    public RangeComparatorWindow(IRangeComparator comparator, int start, int length) {
+        this.comparator = comparator;
+        this.start = start;
+        this.length = length;
+    }
+
+    @Override
+    public int getRangeCount() {
+        return length;
+    }
+
+    @Override
+    public boolean rangesEqual(int thisIndex, IRangeComparator other, int otherIndex) {
+        if (!(other instanceof RangeComparatorWindow)) {
+            return false;
+        }
+        RangeComparatorWindow otherWindow = (RangeComparatorWindow) other;
+        return comparator.rangesEqual(start + thisIndex, otherWindow.comparator, otherWindow.start + otherIndex);
+    }
+
+    @Override
+    public boolean skipRangeComparison(int length, int maxLength, IRangeComparator other) {
+        return false;
+    }
+
+    public int getStart() {
+        return start;
+    }
+}
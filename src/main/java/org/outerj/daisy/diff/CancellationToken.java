@@ -0,0 +1,34 @@
+package org.outerj.daisy.diff;
+
+/**
+ * Lets another thread stop a running diff, for instance when the client
+ * waiting for it has gone away. Passed to
+ * {@link DaisyDiff#diffHTML(org.xml.sax.InputSource, org.xml.sax.InputSource, org.xml.sax.ContentHandler, String, java.util.Locale, Deadline, CancellationToken)},
+ * it is checked while parsing, searching, marking up and writing the
+ * output, and the diff throws a {@link DiffCancelledException} soon after
+ * {@link #cancel()} is called.
+ * <p>
+ * A token may be shared by several diffs, which are then all cancelled together.
+ */
+public class CancellationToken implements DiffCheckpoint {
+
+    private volatile boolean cancelled;
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * @throws DiffCancelledException if the token was cancelled
+     */
+    @Override
+    public void check() {
+        if (cancelled) {
+            throw new DiffCancelledException();
+        }
+    }
+}
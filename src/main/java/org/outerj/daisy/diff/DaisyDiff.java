@@ -16,51 +16,393 @@
 package org.outerj.daisy.diff;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
 import org.eclipse.compare.rangedifferencer.HTMLDiffer;
 import org.outerj.daisy.diff.html.HtmlSaxDiffOutput;
 import org.outerj.daisy.diff.html.TextNodeComparator;
 import org.outerj.daisy.diff.html.dom.DomTreeBuilder;
+import org.outerj.daisy.diff.html.dom.TagNode;
+import org.outerj.daisy.diff.html.dom.TextNodePreprocessor;
+import org.outerj.daisy.diff.html.dom.TokenDictionary;
+import org.outerj.daisy.diff.metrics.DiffMetricsListener;
 import org.xml.sax.ContentHandler;
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 import org.xml.sax.XMLReader;
-import org.xml.sax.helpers.XMLReaderFactory;
 
+/**
+ * Diffs HTML documents. An instance only holds its configuration, every diff
+ * gets its own trees, dictionary and output, so one instance can be created
+ * for the life of the application and used by any number of threads at once.
+ * The parsers are pooled, and the lookups of {@link org.outerj.daisy.diff.html.dom.helper.AttributesMap}
+ * and {@link org.outerj.daisy.diff.html.ancestor.tagtostring.TagToStringFactory}
+ * are cached for all the instances.
+ */
 public class DaisyDiff {
+
+    /**
+     * Readers shared by all the instances, two for each diff running at once
+     * up to twice the number of processors.
+     */
+    private static final XMLReaderPool READERS = new XMLReaderPool(4 * Runtime.getRuntime().availableProcessors(),
+        new XMLReaderPool.DefaultReaderFactory());
+
+    /**
+     * Readers of the {@link ParseMode#LENIENT} diffs, shared the same way.
+     */
+    private static final XMLReaderPool HTML_READERS = new XMLReaderPool(4 * Runtime.getRuntime().availableProcessors(),
+        new XMLReaderPool.HtmlReaderFactory());
+
     private final DiffMode mode;
     private final int chunkSize;
     private final boolean forcedChunks;
+    private final ExecutorService executor;
+    private final DiffMetricsListener metricsListener;
+    private final ParseMode parseMode;
+    private final Predicate<TagNode> hiddenContainerRule;
 
     public DaisyDiff(DiffMode mode, int chunkSize, boolean forcedChunks) {
+        this(mode, chunkSize, forcedChunks, null);
+    }
+
+    /**
+     * @param executor used to parse the old document while the new one is parsed
+     * on the calling thread, and to search the chunks of {@link DiffMode#CHUNKED}
+     * diffs concurrently; <code>null</code> does all the work on the calling
+     * thread. The executor should not be the one running {@link #diffHTML}, and
+     * it is not shut down by this class.
+     */
+    public DaisyDiff(DiffMode mode, int chunkSize, boolean forcedChunks, ExecutorService executor) {
+        this(mode, chunkSize, forcedChunks, executor, DiffMetricsListener.NONE);
+    }
+
+    /**
+     * @param metricsListener receives the metrics of every diff
+     */
+    public DaisyDiff(DiffMode mode, int chunkSize, boolean forcedChunks, ExecutorService executor,
+                     DiffMetricsListener metricsListener) {
+        this(mode, chunkSize, forcedChunks, executor, metricsListener, ParseMode.STRICT);
+    }
+
+    /**
+     * @param parseMode whether the documents must be well-formed XHTML or
+     * may be any HTML
+     */
+    public DaisyDiff(DiffMode mode, int chunkSize, boolean forcedChunks, ExecutorService executor,
+                     DiffMetricsListener metricsListener, ParseMode parseMode) {
+        this(mode, chunkSize, forcedChunks, executor, metricsListener, parseMode, null);
+    }
+
+    /**
+     * @param hiddenContainerRule recognizes containers of hidden text next to
+     * {@link TextNodePreprocessor#DISPLAY_NONE_RULE}, or <code>null</code>;
+     * the text directly inside them is neither compared nor put into chunks.
+     * The rule is called by all the threads running diffs.
+     */
+    public DaisyDiff(DiffMode mode, int chunkSize, boolean forcedChunks, ExecutorService executor,
+                     DiffMetricsListener metricsListener, ParseMode parseMode, Predicate<TagNode> hiddenContainerRule) {
         this.mode = mode;
         this.chunkSize = chunkSize;
         this.forcedChunks = forcedChunks;
+        this.executor = executor;
+        this.metricsListener = metricsListener;
+        this.parseMode = parseMode;
+        this.hiddenContainerRule = hiddenContainerRule;
     }
 
-    public void diffHTML(InputSource oldSource, InputSource newSource, ContentHandler consumer, String prefix, Locale locale)
+    /**
+     * @return the timings and counters of the diff
+     */
+    public DiffReport diffHTML(InputSource oldSource, InputSource newSource, ContentHandler consumer, String prefix, Locale locale)
         throws SAXException, IOException {
+        return diffHTML(oldSource, newSource, consumer, prefix, locale, null);
+    }
 
-        DomTreeBuilder oldHandler = new DomTreeBuilder(true);
-        XMLReader xr1 = XMLReaderFactory.createXMLReader();
-        xr1.setContentHandler(oldHandler);
-        xr1.parse(oldSource);
-        TextNodeComparator leftComparator = new TextNodeComparator(oldHandler, locale);
+    /**
+     * Diffs the documents within a time budget, see
+     * {@link #diffHTML(InputSource, InputSource, ContentHandler, String, Locale, Deadline, CancellationToken)}.
+     *
+     * @param deadline <code>null</code> for no time limit
+     * @return the timings and counters of the diff
+     */
+    public DiffReport diffHTML(InputSource oldSource, InputSource newSource, ContentHandler consumer, String prefix, Locale locale,
+                               Deadline deadline) throws SAXException, IOException {
+        return diffHTML(oldSource, newSource, consumer, prefix, locale, deadline, null);
+    }
 
-        DomTreeBuilder newHandler = new DomTreeBuilder(true);
-        XMLReader xr2 = XMLReaderFactory.createXMLReader();
-        xr2.setContentHandler(newHandler);
-        xr2.parse(newSource);
+    /**
+     * Diffs the documents within a time budget. When the searches run out of
+     * time the diff falls back to coarser ones, see
+     * {@link HTMLDiffer#diff(TextNodeComparator, TextNodeComparator, DiffMode, int, DiffReport, Deadline)};
+     * the report tells whether that happened. Parsing and output generation
+     * are not limited.
+     * <p>
+     * The diff can also be stopped with a {@link CancellationToken}, in which
+     * case it throws a {@link DiffCancelledException}.
+     * <p>
+     * Documents with the same text nodes and ancestors are output as they
+     * are without searching any differences; the report is then flagged as
+     * identical. When both sources are {@link HashedInputSource}s with the
+     * same digest, the old document is not even parsed.
+     * <p>
+     * The character or byte streams of both sources are closed once the
+     * diff is done with them, whether it succeeds or not.
+     *
+     * @param deadline <code>null</code> for no time limit
+     * @param cancellation <code>null</code> if the diff cannot be cancelled
+     * @return the timings and counters of the diff
+     */
+    public DiffReport diffHTML(InputSource oldSource, InputSource newSource, ContentHandler consumer, String prefix, Locale locale,
+                               Deadline deadline, CancellationToken cancellation) throws SAXException, IOException {
 
-        TextNodeComparator rightComparator = new TextNodeComparator(newHandler, locale);
+        long start = System.nanoTime();
+        DiffReport report = new DiffReport();
+        TokenDictionary tokenDictionary = new TokenDictionary();
+        DiffCheckpoint checkpoint = cancellation != null ? cancellation : DiffCheckpoint.NONE;
 
         HtmlSaxDiffOutput output = new HtmlSaxDiffOutput(consumer, prefix);
-        HTMLDiffer differ = new HTMLDiffer(output);
+        output.setCheckpoint(checkpoint);
+        HTMLDiffer differ = new HTMLDiffer(output, executor, metricsListener);
+        differ.setCheckpoint(checkpoint);
+
+        ParsedDocument oldDocument;
+        ParsedDocument newDocument;
+        try {
+            if (HashedInputSource.haveSameDigest(oldSource, newSource)) {
+                newDocument = parse(newSource, tokenDictionary, locale, checkpoint);
+                newDocument.addTo(report);
+                differ.outputUnchanged(newDocument.comparator, mode, report);
+                return complete(report, start);
+            }
+            if (executor != null) {
+                BackgroundParse oldParse = new BackgroundParse(oldSource, tokenDictionary, locale, checkpoint);
+                Future<ParsedDocument> oldResult = executor.submit(oldParse);
+                try {
+                    newDocument = parse(newSource, tokenDictionary, locale, checkpoint);
+                    oldDocument = getParsed(oldResult);
+                } catch (SAXException | IOException | RuntimeException | Error e) {
+                    oldParse.abandon(e);
+                    throw e;
+                }
+            } else {
+                oldDocument = parse(oldSource, tokenDictionary, locale, checkpoint);
+                newDocument = parse(newSource, tokenDictionary, locale, checkpoint);
+            }
+        } finally {
+            // a source may not have been parsed, or the parser may have
+            // failed before reaching the end of it; a parse on the executor
+            // has stopped by now
+            close(oldSource);
+            close(newSource);
+        }
+        oldDocument.addTo(report);
+        newDocument.addTo(report);
+        TextNodeComparator leftComparator = oldDocument.comparator;
+        TextNodeComparator rightComparator = newDocument.comparator;
+
+        if (oldDocument.contentHash == newDocument.contentHash && leftComparator.hasSameContent(rightComparator)) {
+            differ.outputUnchanged(rightComparator, mode, report);
+            return complete(report, start);
+        }
 
         DiffMode currentMode = mode;
         if (forcedChunks && (leftComparator.getTextNodes().size() > chunkSize || rightComparator.getTextNodes().size() > chunkSize)) {
             currentMode = DiffMode.CHUNKED;
+            report.setChunkingForced(mode != DiffMode.CHUNKED);
+        }
+        differ.diff(leftComparator, rightComparator, currentMode, chunkSize, report, deadline);
+        return complete(report, start);
+    }
+
+    private DiffReport complete(DiffReport report, long start) {
+        report.setTotalNanos(System.nanoTime() - start);
+        metricsListener.diffCompleted(report);
+        return report;
+    }
+
+    /**
+     * Parses and preprocesses one document.
+     */
+    private ParsedDocument parse(InputSource source, TokenDictionary tokenDictionary, Locale locale,
+                                 DiffCheckpoint checkpoint) throws SAXException, IOException {
+        XMLReaderPool readers = parseMode == ParseMode.LENIENT ? HTML_READERS : READERS;
+        long parseStart = System.nanoTime();
+        DomTreeBuilder handler = new DomTreeBuilder(true, tokenDictionary);
+        handler.setCheckpoint(checkpoint);
+        if (hiddenContainerRule != null) {
+            handler.addHiddenContainerRule(hiddenContainerRule);
+        }
+        XMLReader reader = readers.borrow();
+        reader.setContentHandler(handler);
+        reader.parse(source);
+        readers.release(reader);
+        long preprocessStart = System.nanoTime();
+        TextNodeComparator comparator = new TextNodeComparator(handler, locale);
+        return new ParsedDocument(comparator, handler.getContentHash(), preprocessStart - parseStart,
+            System.nanoTime() - preprocessStart);
+    }
+
+    /**
+     * Closes the stream of a source, which has no effect if the parser
+     * already closed it. Failures are ignored, the diff no longer needs the
+     * source.
+     */
+    private static void close(InputSource source) {
+        try {
+            if (source.getCharacterStream() != null) {
+                source.getCharacterStream().close();
+            } else if (source.getByteStream() != null) {
+                source.getByteStream().close();
+            }
+        } catch (IOException e) {
+            // nothing more to do with the source
+        }
+    }
+
+    private static ParsedDocument getParsed(Future<ParsedDocument> document) throws SAXException, IOException {
+        try {
+            return document.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while parsing the old document");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SAXException) {
+                throw (SAXException) cause;
+            }
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new SAXException((Exception) cause);
+        }
+    }
+
+    /**
+     * The parse of the old document on the executor. When the diff fails
+     * before using it, {@link #abandon(Throwable)} stops the parse at its next
+     * checkpoint and waits for it, so that the source is not closed while it
+     * is still being read.
+     */
+    private class BackgroundParse implements Callable<ParsedDocument> {
+
+        private final InputSource source;
+
+        private final TokenDictionary tokenDictionary;
+
+        private final Locale locale;
+
+        private final DiffCheckpoint checkpoint;
+
+        /**
+         * Set by the first of the parse starting and the diff abandoning it,
+         * so that a parse still waiting for a thread never starts.
+         */
+        private final AtomicBoolean claimed = new AtomicBoolean();
+
+        private final CountDownLatch done = new CountDownLatch(1);
+
+        private volatile boolean abandoned;
+
+        private volatile Throwable failure;
+
+        BackgroundParse(InputSource source, TokenDictionary tokenDictionary, Locale locale, DiffCheckpoint checkpoint) {
+            this.source = source;
+            this.tokenDictionary = tokenDictionary;
+            this.locale = locale;
+            this.checkpoint = checkpoint;
+        }
+
+        @Override
+        public ParsedDocument call() throws SAXException, IOException {
+            if (!claimed.compareAndSet(false, true)) {
+                throw new DiffCancelledException();
+            }
+            try {
+                return parse(source, tokenDictionary, locale, checkpoint.and(this::checkAbandoned));
+            } catch (SAXException | IOException | RuntimeException | Error e) {
+                failure = e;
+                throw e;
+            } finally {
+                done.countDown();
+            }
+        }
+
+        private void checkAbandoned() {
+            if (abandoned) {
+                throw new DiffCancelledException();
+            }
+        }
+
+        /**
+         * Stops the parse and waits until it no longer reads the source. A
+         * failure of the parse other than being stopped is added to the given
+         * one, which makes the diff fail.
+         */
+        void abandon(Throwable cause) {
+            abandoned = true;
+            if (claimed.compareAndSet(false, true)) {
+                return;
+            }
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    done.await();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            Throwable parseFailure = failure;
+            if (parseFailure != null && parseFailure != cause && !(parseFailure instanceof DiffCancelledException)) {
+                cause.addSuppressed(parseFailure);
+            }
+        }
+    }
+
+    /**
+     * A parsed document with the time spent on it, which may have been spent
+     * on another thread.
+     */
+    private static class ParsedDocument {
+
+        final TextNodeComparator comparator;
+
+        /**
+         * @see DomTreeBuilder#getContentHash()
+         */
+        final long contentHash;
+
+        final long parseNanos;
+
+        final long preprocessNanos;
+
+        ParsedDocument(TextNodeComparator comparator, long contentHash, long parseNanos, long preprocessNanos) {
+            this.comparator = comparator;
+            this.contentHash = contentHash;
+            this.parseNanos = parseNanos;
+            this.preprocessNanos = preprocessNanos;
+        }
+
+        void addTo(DiffReport report) {
+            report.addParseNanos(parseNanos);
+            report.addPreprocessNanos(preprocessNanos);
         }
-        differ.diff(leftComparator, rightComparator, currentMode, chunkSize);
     }
 }
@@ -0,0 +1,58 @@
+package org.outerj.daisy.diff;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A time budget for a diff, starting when the deadline is created. Passed to
+ * {@link DaisyDiff#diffHTML(org.xml.sax.InputSource, org.xml.sax.InputSource, org.xml.sax.ContentHandler, String, java.util.Locale, Deadline)},
+ * it makes the diff fall back to cheaper and coarser searches instead of
+ * running over budget.
+ */
+public final class Deadline implements DiffCheckpoint {
+
+    private final long startNanos;
+
+    private final long budgetNanos;
+
+    private Deadline(long startNanos, long budgetNanos) {
+        this.startNanos = startNanos;
+        this.budgetNanos = budgetNanos;
+    }
+
+    /**
+     * @return a deadline expiring the given time from now
+     */
+    public static Deadline after(long budget, TimeUnit unit) {
+        if (budget < 0) {
+            throw new IllegalArgumentException("Negative time budget: " + budget);
+        }
+        return new Deadline(System.nanoTime(), unit.toNanos(budget));
+    }
+
+    /**
+     * @param share of the budget of this deadline, between 0 and 1
+     * @return a deadline with the same start, expiring after the given share
+     * of the budget
+     */
+    public Deadline getStage(double share) {
+        return new Deadline(startNanos, (long) (budgetNanos * share));
+    }
+
+    public boolean isExpired() {
+        return System.nanoTime() - startNanos >= budgetNanos;
+    }
+
+    public long getRemainingNanos() {
+        return Math.max(0, budgetNanos - (System.nanoTime() - startNanos));
+    }
+
+    /**
+     * @throws DeadlineExceededException if the deadline has expired
+     */
+    @Override
+    public void check() {
+        if (isExpired()) {
+            throw new DeadlineExceededException("Time budget of " + TimeUnit.NANOSECONDS.toMillis(budgetNanos) + " ms exceeded");
+        }
+    }
+}
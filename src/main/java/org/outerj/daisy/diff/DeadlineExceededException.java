@@ -0,0 +1,14 @@
+package org.outerj.daisy.diff;
+
+/**
+ * Thrown at a {@link DiffCheckpoint} when the time budget of a diff step is
+ * used up. The diff catches it and falls back to a cheaper step.
+ */
+public class DeadlineExceededException extends RuntimeException {
+
+    private static final long serialVersionUID = 3761450278153436937L;
+
+    public DeadlineExceededException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,14 @@
+package org.outerj.daisy.diff;
+
+/**
+ * Thrown by a diff whose {@link CancellationToken} was cancelled. Output
+ * written to the content handler before is incomplete.
+ */
+public class DiffCancelledException extends RuntimeException {
+
+    private static final long serialVersionUID = -2418729613090542812L;
+
+    public DiffCancelledException() {
+        super("The diff was cancelled");
+    }
+}
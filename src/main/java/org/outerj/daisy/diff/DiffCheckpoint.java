@@ -0,0 +1,35 @@
+package org.outerj.daisy.diff;
+
+/**
+ * A point in a long running loop of the diff where it may be stopped. The
+ * loops call {@link #check()} regularly, which throws to abort them.
+ */
+public interface DiffCheckpoint {
+
+    /**
+     * Checkpoint that never stops the diff.
+     */
+    DiffCheckpoint NONE = () -> {
+    };
+
+    /**
+     * @throws RuntimeException to abort the running work
+     */
+    void check();
+
+    /**
+     * @return a checkpoint calling this one and then the given one
+     */
+    default DiffCheckpoint and(DiffCheckpoint other) {
+        if (other == NONE) {
+            return this;
+        }
+        if (this == NONE) {
+            return other;
+        }
+        return () -> {
+            check();
+            other.check();
+        };
+    }
+}
@@ -6,5 +6,16 @@ package org.outerj.daisy.diff;
 public enum DiffMode {
     FULL,
     CHUNKED,
-    GREEDY
+    GREEDY,
+    /**
+     * Full document diff with {@link org.eclipse.compare.rangedifferencer.MyersDifferencer},
+     * whose cost grows with the number of edits instead of the document size.
+     */
+    MYERS,
+    /**
+     * Aligns block-level elements (paragraphs, list items, table cells...)
+     * first and compares words only inside blocks that could not be matched,
+     * see {@link org.eclipse.compare.rangedifferencer.BlockDifferencer}.
+     */
+    BLOCK
 }
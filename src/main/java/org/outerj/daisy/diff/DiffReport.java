@@ -0,0 +1,272 @@
+package org.outerj.daisy.diff;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Timings and counters of one diff, returned by {@link DaisyDiff#diffHTML}.
+ * Times are in nanoseconds. Phases that run once per document or per chunk
+ * are summed, so with an executor they may add up to more than the total
+ * time.
+ * <p>
+ * A report is filled by the thread running the diff and is not thread-safe.
+ */
+public class DiffReport {
+
+    private DiffMode mode;
+
+    private boolean chunkingForced;
+
+    private boolean degraded;
+
+    private boolean identical;
+
+    private long parseNanos;
+
+    private long preprocessNanos;
+
+    private long chunkingNanos;
+
+    private long searchNanos;
+
+    private long markupNanos;
+
+    private long whiteSpaceExpansionNanos;
+
+    private long outputNanos;
+
+    private long totalNanos;
+
+    private int oldTokens;
+
+    private int newTokens;
+
+    private int chunks;
+
+    private int differences;
+
+    private long rangeComparisons;
+
+    private int ancestorComparisons;
+
+    /**
+     * @return the mode the differences were searched in, which is
+     * {@link DiffMode#CHUNKED} when chunks were forced
+     */
+    public DiffMode getMode() {
+        return mode;
+    }
+
+    public void setMode(DiffMode mode) {
+        this.mode = mode;
+    }
+
+    /**
+     * @return whether the diff was switched to {@link DiffMode#CHUNKED} because
+     * a document was larger than the chunk size
+     */
+    public boolean isChunkingForced() {
+        return chunkingForced;
+    }
+
+    public void setChunkingForced(boolean chunkingForced) {
+        this.chunkingForced = chunkingForced;
+    }
+
+    /**
+     * @return whether a coarser search or markup than the mode's was used to
+     * meet the deadline of the diff
+     */
+    public boolean isDegraded() {
+        return degraded;
+    }
+
+    public void setDegraded(boolean degraded) {
+        this.degraded = degraded;
+    }
+
+    /**
+     * @return whether the documents were found to be the same, so the search
+     * and the markup were skipped
+     */
+    public boolean isIdentical() {
+        return identical;
+    }
+
+    public void setIdentical(boolean identical) {
+        this.identical = identical;
+    }
+
+    /**
+     * @return time spent building the trees of both documents
+     */
+    public long getParseNanos() {
+        return parseNanos;
+    }
+
+    public void addParseNanos(long nanos) {
+        parseNanos += nanos;
+    }
+
+    /**
+     * @return time spent preparing the text nodes of both documents for the
+     * comparison
+     */
+    public long getPreprocessNanos() {
+        return preprocessNanos;
+    }
+
+    public void addPreprocessNanos(long nanos) {
+        preprocessNanos += nanos;
+    }
+
+    /**
+     * @return time spent splitting the documents into chunks by their segments
+     */
+    public long getChunkingNanos() {
+        return chunkingNanos;
+    }
+
+    public void addChunkingNanos(long nanos) {
+        chunkingNanos += nanos;
+    }
+
+    /**
+     * @return time spent searching the differences, summed over the chunks
+     */
+    public long getSearchNanos() {
+        return searchNanos;
+    }
+
+    public void addSearchNanos(long nanos) {
+        searchNanos += nanos;
+    }
+
+    /**
+     * @return time spent marking up the new tree with the differences
+     */
+    public long getMarkupNanos() {
+        return markupNanos;
+    }
+
+    public void addMarkupNanos(long nanos) {
+        markupNanos += nanos;
+    }
+
+    public long getWhiteSpaceExpansionNanos() {
+        return whiteSpaceExpansionNanos;
+    }
+
+    public void addWhiteSpaceExpansionNanos(long nanos) {
+        whiteSpaceExpansionNanos += nanos;
+    }
+
+    /**
+     * @return time spent generating the output from the marked up tree
+     */
+    public long getOutputNanos() {
+        return outputNanos;
+    }
+
+    public void addOutputNanos(long nanos) {
+        outputNanos += nanos;
+    }
+
+    /**
+     * @return wall time of the whole diff
+     */
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+
+    public void setTotalNanos(long totalNanos) {
+        this.totalNanos = totalNanos;
+    }
+
+    /**
+     * @return number of text nodes of the old document that are compared
+     */
+    public int getOldTokens() {
+        return oldTokens;
+    }
+
+    public void setOldTokens(int oldTokens) {
+        this.oldTokens = oldTokens;
+    }
+
+    /**
+     * @return number of text nodes of the new document that are compared
+     */
+    public int getNewTokens() {
+        return newTokens;
+    }
+
+    public void setNewTokens(int newTokens) {
+        this.newTokens = newTokens;
+    }
+
+    /**
+     * @return number of chunks searched, 1 when the documents were not chunked
+     */
+    public int getChunks() {
+        return chunks;
+    }
+
+    public void addChunks(int count) {
+        chunks += count;
+    }
+
+    /**
+     * @return number of differences marked up, after merging nearby ones
+     */
+    public int getDifferences() {
+        return differences;
+    }
+
+    public void addDifferences(int count) {
+        differences += count;
+    }
+
+    /**
+     * @return number of token comparisons made by the difference search
+     */
+    public long getRangeComparisons() {
+        return rangeComparisons;
+    }
+
+    public void addRangeComparisons(long count) {
+        rangeComparisons += count;
+    }
+
+    /**
+     * @return number of ancestor trees compared during markup
+     */
+    public int getAncestorComparisons() {
+        return ancestorComparisons;
+    }
+
+    public void addAncestorComparisons(int count) {
+        ancestorComparisons += count;
+    }
+
+    @Override
+    public String toString() {
+        return "DiffReport[mode=" + mode
+            + ", chunkingForced=" + chunkingForced
+            + ", degraded=" + degraded
+            + ", identical=" + identical
+            + ", totalMs=" + TimeUnit.NANOSECONDS.toMillis(totalNanos)
+            + ", parseMs=" + TimeUnit.NANOSECONDS.toMillis(parseNanos)
+            + ", preprocessMs=" + TimeUnit.NANOSECONDS.toMillis(preprocessNanos)
+            + ", chunkingMs=" + TimeUnit.NANOSECONDS.toMillis(chunkingNanos)
+            + ", searchMs=" + TimeUnit.NANOSECONDS.toMillis(searchNanos)
+            + ", markupMs=" + TimeUnit.NANOSECONDS.toMillis(markupNanos)
+            + ", whiteSpaceExpansionMs=" + TimeUnit.NANOSECONDS.toMillis(whiteSpaceExpansionNanos)
+            + ", outputMs=" + TimeUnit.NANOSECONDS.toMillis(outputNanos)
+            + ", oldTokens=" + oldTokens
+            + ", newTokens=" + newTokens
+            + ", chunks=" + chunks
+            + ", differences=" + differences
+            + ", rangeComparisons=" + rangeComparisons
+            + ", ancestorComparisons=" + ancestorComparisons + "]";
+    }
+}
@@ -0,0 +1,50 @@
+package org.outerj.daisy.diff;
+
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.Arrays;
+import org.xml.sax.InputSource;
+
+/**
+ * A source together with a digest of its content, computed by the caller
+ * beforehand, for instance when the document was stored. When both sources
+ * of a diff carry a digest and the digests are equal,
+ * {@link DaisyDiff#diffHTML(InputSource, InputSource, org.xml.sax.ContentHandler, String, java.util.Locale, Deadline, CancellationToken)}
+ * takes the documents to be identical without reading the old one: only
+ * the new document is parsed, and it is output unchanged.
+ * <p>
+ * Both digests must be computed with the same algorithm over the bytes or
+ * characters the parser reads. The digests are trusted, a collision makes
+ * the diff miss the changes.
+ */
+public class HashedInputSource extends InputSource {
+
+    private final byte[] digest;
+
+    public HashedInputSource(InputStream byteStream, byte[] digest) {
+        super(byteStream);
+        this.digest = digest.clone();
+    }
+
+    public HashedInputSource(Reader characterStream, byte[] digest) {
+        super(characterStream);
+        this.digest = digest.clone();
+    }
+
+    public HashedInputSource(String systemId, byte[] digest) {
+        super(systemId);
+        this.digest = digest.clone();
+    }
+
+    public byte[] getDigest() {
+        return digest.clone();
+    }
+
+    /**
+     * @return whether both sources carry a digest and the digests are equal
+     */
+    static boolean haveSameDigest(InputSource oldSource, InputSource newSource) {
+        return oldSource instanceof HashedInputSource && newSource instanceof HashedInputSource
+            && Arrays.equals(((HashedInputSource) oldSource).digest, ((HashedInputSource) newSource).digest);
+    }
+}
@@ -0,0 +1,23 @@
+package org.outerj.daisy.diff;
+
+/**
+ * How the documents given to {@link DaisyDiff} are parsed.
+ */
+public enum ParseMode {
+    /**
+     * Parses the documents with the default {@link org.xml.sax.XMLReader}, so
+     * they must be well-formed XHTML.
+     */
+    STRICT,
+    /**
+     * Parses the documents with NekoHTML, which reads HTML as browsers do:
+     * it balances and closes the tags, adds the missing html and body
+     * elements and knows the HTML entities. Its events feed the tree builder
+     * directly, so raw HTML needs no cleanup pass before diffing.
+     * <p>
+     * NekoHTML also inserts the elements HTML implies, such as the tbody of
+     * a table, so the tree of a well-formed XHTML document and the diffs of
+     * its tables differ from the ones {@link #STRICT} gives.
+     */
+    LENIENT
+}
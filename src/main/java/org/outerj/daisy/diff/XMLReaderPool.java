@@ -0,0 +1,109 @@
+package org.outerj.daisy.diff;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import org.cyberneko.html.parsers.SAXParser;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+import org.xml.sax.helpers.XMLReaderFactory;
+
+/**
+ * A bounded pool of the readers parsing the documents, so that a parser is
+ * created and configured only when all the pooled readers are in use.
+ * Readers are borrowed for one document and given back once it has been
+ * parsed; a reader that failed is not given back, and readers given back to
+ * a full pool are dropped. Thread-safe.
+ */
+class XMLReaderPool {
+
+    /**
+     * Handler set on the readers given back, so that they do not keep the
+     * tree of the last document.
+     */
+    private static final DefaultHandler NO_HANDLER = new DefaultHandler();
+
+    private final BlockingQueue<XMLReader> readers;
+
+    private final ReaderFactory factory;
+
+    /**
+     * @param capacity the largest number of idle readers kept
+     * @param factory creates and configures the readers
+     */
+    XMLReaderPool(int capacity, ReaderFactory factory) {
+        readers = new ArrayBlockingQueue<XMLReader>(capacity);
+        this.factory = factory;
+    }
+
+    /**
+     * @return an idle reader, or a new one
+     */
+    XMLReader borrow() throws SAXException {
+        XMLReader reader = readers.poll();
+        return reader != null ? reader : factory.create();
+    }
+
+    /**
+     * Gives back a reader that has parsed a document without errors. The
+     * reader resets its own state when it parses the next one.
+     */
+    void release(XMLReader reader) {
+        reader.setContentHandler(NO_HANDLER);
+        readers.offer(reader);
+    }
+
+    interface ReaderFactory {
+
+        XMLReader create() throws SAXException;
+    }
+
+    /**
+     * Creates readers of the class {@link XMLReaderFactory} chose for the first
+     * reader; changes of the <code>org.xml.sax.driver</code> property
+     * afterwards are ignored.
+     */
+    static class DefaultReaderFactory implements ReaderFactory {
+
+        /**
+         * Class of the readers created by {@link XMLReaderFactory}, which looks
+         * through the system properties and the class path every time.
+         */
+        private volatile Class<? extends XMLReader> readerClass;
+
+        @Override
+        public XMLReader create() throws SAXException {
+            Class<? extends XMLReader> type = readerClass;
+            if (type == null) {
+                XMLReader reader = XMLReaderFactory.createXMLReader();
+                readerClass = reader.getClass();
+                return reader;
+            }
+            try {
+                return type.newInstance();
+            } catch (ReflectiveOperationException e) {
+                throw new SAXException("Cannot create a reader of " + type.getName(), e);
+            }
+        }
+    }
+
+    /**
+     * Creates NekoHTML parsers reporting the element and attribute names in
+     * lower case, as {@link org.outerj.daisy.diff.html.dom.DomTreeBuilder}
+     * expects them.
+     */
+    static class HtmlReaderFactory implements ReaderFactory {
+
+        private static final String ELEMENT_NAMES = "http://cyberneko.org/html/properties/names/elems";
+
+        private static final String ATTRIBUTE_NAMES = "http://cyberneko.org/html/properties/names/attrs";
+
+        @Override
+        public XMLReader create() throws SAXException {
+            SAXParser parser = new SAXParser();
+            parser.setProperty(ELEMENT_NAMES, "lower");
+            parser.setProperty(ATTRIBUTE_NAMES, "lower");
+            return parser;
+        }
+    }
+}
@@ -19,12 +19,22 @@ public class ChunkCreator {
     private final SortedMap<String, List<TextNode>> segmentsRight;
 
     public ChunkCreator(TextNodeComparator leftComparator, TextNodeComparator rightComparator) {
-        TextNodePreprocessor preprocessorLeft = new TextNodePreprocessor(leftComparator.getBodyNode(), leftComparator.getTextNodes());
-        TextNodePreprocessor preprocessorRight = new TextNodePreprocessor(rightComparator.getBodyNode(), rightComparator.getTextNodes());
+        TextNodePreprocessor preprocessorLeft = new TextNodePreprocessor(leftComparator.getBodyNode(),
+            leftComparator.getTextNodes(), leftComparator.getHiddenContainerRule());
+        TextNodePreprocessor preprocessorRight = new TextNodePreprocessor(rightComparator.getBodyNode(),
+            rightComparator.getTextNodes(), rightComparator.getHiddenContainerRule());
         segmentsLeft = preprocessorLeft.collectSegmentNodes();
         segmentsRight = preprocessorRight.collectSegmentNodes();
     }
 
+    /**
+     * @return whether the old document has segment markers, without which
+     * {@link #getChunks} fails
+     */
+    public boolean hasSegments() {
+        return !segmentsLeft.isEmpty();
+    }
+
     public Collection<Pair<List<TextNode>, List<TextNode>>> getChunks(int maxChunkSize) {
         return reduceToChunks(merge().values(), maxChunkSize);
     }
@@ -15,6 +15,7 @@
  */
 package org.outerj.daisy.diff.html;
 
+import org.outerj.daisy.diff.DiffCheckpoint;
 import org.outerj.daisy.diff.html.dom.ImageNode;
 import org.outerj.daisy.diff.html.dom.Node;
 import org.outerj.daisy.diff.html.dom.SeparatingNode;
@@ -36,16 +37,28 @@ public class HtmlSaxDiffOutput implements DiffOutput {
 
     private String prefix;
 
+    private DiffCheckpoint checkpoint = DiffCheckpoint.NONE;
+
     public HtmlSaxDiffOutput(ContentHandler handler, String name) {
         this.handler = handler;
         this.prefix = name;
     }
 
+    /**
+     * @param checkpoint called before every tag is written, so that the output
+     * can be stopped
+     */
+    public void setCheckpoint(DiffCheckpoint checkpoint) {
+        this.checkpoint = checkpoint;
+    }
+
     /**
      * {@inheritDoc}
      */
     public void generateOutput(TagNode node) throws SAXException {
 
+        checkpoint.check();
+
         if (!node.getQName().equalsIgnoreCase("img")
                 && !node.getQName().equalsIgnoreCase("body")) {
             handler.startElement("", node.getQName(), node.getQName(), node
@@ -16,10 +16,12 @@
 package org.outerj.daisy.diff.html;
 
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.function.Predicate;
 import org.eclipse.compare.rangedifferencer.IRangeComparator;
 import org.outerj.daisy.diff.html.ancestor.AncestorComparator;
 import org.outerj.daisy.diff.html.ancestor.AncestorComparatorResult;
@@ -44,16 +46,30 @@ public class TextNodeComparator implements IRangeComparator, Iterable<TextNode>
 
     private List<Modification> lastModified = new ArrayList<Modification>();
 
+    /**
+     * Ancestor comparisons of this diff by the pair of parents compared.
+     * Splitting and inserting deleted nodes only replaces ancestors with
+     * equivalent copies, so a result stays valid for the whole diff.
+     */
+    private Map<ParentPair, AncestorComparatorResult> ancestorResults = new HashMap<ParentPair, AncestorComparatorResult>();
+
+    private int ancestorComparisons;
+
     private BodyNode bodyNode;
 
     private Locale locale;
 
+    private Predicate<TagNode> hiddenContainerRule;
+
     public TextNodeComparator(DomTree tree, Locale locale) {
         super();
         this.locale = locale;
         textNodes = tree.getTextNodes();
         bodyNode = tree.getBodyNode();
-        TextNodePreprocessor.removeUnprocessableNodes(getBodyNode(), textNodes);
+        hiddenContainerRule = tree.getHiddenContainerRule();
+        if (!tree.isHiddenContentFiltered()) {
+            TextNodePreprocessor.removeUnprocessableNodes(getBodyNode(), textNodes, hiddenContainerRule);
+        }
     }
 
     public BodyNode getBodyNode() {
@@ -72,10 +88,44 @@ public class TextNodeComparator implements IRangeComparator, Iterable<TextNode>
         this.textNodes = textNodes;
     }
 
+    /**
+     * @return the rule recognizing the hidden containers of the tree, see
+     * {@link DomTree#getHiddenContainerRule()}
+     */
+    public Predicate<TagNode> getHiddenContainerRule() {
+        return hiddenContainerRule;
+    }
+
     public TextNode getTextNode(int i) {
         return textNodes.get(i);
     }
 
+    /**
+     * Checks whether the text nodes of the other comparator are the same as
+     * the ones of this comparator, one by one: same text and same ancestor
+     * signature. Diffing such documents finds no differences and marks up
+     * nothing.
+     */
+    public boolean hasSameContent(TextNodeComparator other) {
+        if (textNodes.size() != other.textNodes.size()) {
+            return false;
+        }
+        for (int i = 0; i < textNodes.size(); i++) {
+            TextNode node = textNodes.get(i);
+            TextNode otherNode = other.textNodes.get(i);
+            if (node.getAncestorSignature() != otherNode.getAncestorSignature()) {
+                return false;
+            }
+            boolean sameText = node.getTokenId() >= 0 && otherNode.getTokenId() >= 0
+                ? node.getTokenId() == otherNode.getTokenId()
+                : node.isSameText(otherNode);
+            if (!sameText) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     private long newID = 0;
 
     /**
@@ -158,10 +208,7 @@ public class TextNodeComparator implements IRangeComparator, Iterable<TextNode>
 
         String changes = null;
         while (i < rightend) {
-            AncestorComparator acthis = new AncestorComparator(getTextNode(i).getParentTree());
-            AncestorComparator acother = new AncestorComparator(leftComparator.getTextNode(j).getParentTree());
-
-            AncestorComparatorResult result = acthis.getResult(acother, locale);
+            AncestorComparatorResult result = compareAncestors(getTextNode(i), leftComparator.getTextNode(j));
 
             if (result.isChanged()) {
 
@@ -213,6 +260,57 @@ public class TextNodeComparator implements IRangeComparator, Iterable<TextNode>
 
     }
 
+    /**
+     * Nodes with the same ancestor signature have equivalent ancestors, only
+     * a difference in signature needs a full comparison of the ancestors.
+     * Words of the same paragraph share their parents, so the comparison is
+     * done once per pair of parents.
+     */
+    private AncestorComparatorResult compareAncestors(TextNode rightNode, TextNode leftNode) {
+        if (rightNode.getAncestorSignature() == leftNode.getAncestorSignature()) {
+            return AncestorComparatorResult.UNCHANGED;
+        }
+        ParentPair parents = new ParentPair(leftNode.getParent(), rightNode.getParent());
+        AncestorComparatorResult result = ancestorResults.get(parents);
+        if (result == null) {
+            ancestorComparisons++;
+            AncestorComparator acthis = new AncestorComparator(rightNode.getAncestors());
+            AncestorComparator acother = new AncestorComparator(leftNode.getAncestors());
+            result = acthis.getResult(acother, locale);
+            ancestorResults.put(parents, result);
+        }
+        return result;
+    }
+
+    /**
+     * Identity of a pair of parents of an old and a new text node.
+     */
+    private static final class ParentPair {
+
+        private final TagNode left;
+
+        private final TagNode right;
+
+        ParentPair(TagNode left, TagNode right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof ParentPair)) {
+                return false;
+            }
+            ParentPair other = (ParentPair) obj;
+            return left == other.left && right == other.right;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(left) + System.identityHashCode(right);
+        }
+    }
+
     // used to remove the whitespace between a red and green block
     private boolean whiteAfterLastChangedPart = false;
 
@@ -276,28 +374,8 @@ public class TextNodeComparator implements IRangeComparator, Iterable<TextNode>
         if (after < getRangeCount()) {
 
             LastCommonParentResult orderResult = getTextNode(before).getLastCommonParent(getTextNode(after));
-            List<TagNode> check = getTextNode(before).getParentTree();
-            Collections.reverse(check);
-            for (TagNode curr : check) {
-                if (curr == orderResult.getLastCommonParent()) {
-                    break;
-                } else if (curr.isBlockLevel()) {
-                    useAfter = true;
-                    break;
-                }
-            }
-            if (!useAfter) {
-                check = getTextNode(after).getParentTree();
-                Collections.reverse(check);
-                for (TagNode curr : check) {
-                    if (curr == orderResult.getLastCommonParent()) {
-                        break;
-                    } else if (curr.isBlockLevel()) {
-                        useAfter = true;
-                        break;
-                    }
-                }
-            }
+            useAfter = hasBlockBelow(getTextNode(before), orderResult.getLastCommonParent())
+                    || hasBlockBelow(getTextNode(after), orderResult.getLastCommonParent());
         } else {
             useAfter = false;
         }
@@ -387,6 +465,23 @@ public class TextNodeComparator implements IRangeComparator, Iterable<TextNode>
         deletedID++;
     }
 
+    /**
+     * @return whether a block level tag is found among the ancestors of the
+     * node, walking up from its parent until the given common parent
+     */
+    private static boolean hasBlockBelow(Node node, TagNode commonParent) {
+        List<TagNode> ancestors = node.getAncestors();
+        for (int i = ancestors.size() - 1; i >= 0; i--) {
+            TagNode curr = ancestors.get(i);
+            if (curr == commonParent) {
+                return false;
+            } else if (curr.isBlockLevel()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     private List<Node> getDeletedNodes(TextNodeComparator oldComp, int nodeNumber) {
         return oldComp.getTextNode(nodeNumber).getParent().getParent().getMinimalDeletedSet(deletedID);
     }
@@ -461,4 +556,13 @@ public class TextNodeComparator implements IRangeComparator, Iterable<TextNode>
     public void setLastModified(List<Modification> aLastModified) {
         lastModified = new ArrayList<Modification>(aLastModified);
     }
+
+    /**
+     * @return the number of ancestor trees compared by their longest common
+     * subsequence while marking up this comparator; comparisons answered by
+     * the ancestor signatures or the cache are not counted
+     */
+    public int getAncestorComparisons() {
+        return ancestorComparisons;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,86 @@
+package org.outerj.daisy.diff.html;
+
+import java.util.List;
+import org.eclipse.compare.rangedifferencer.IRangeComparator;
+import org.outerj.daisy.diff.DiffCheckpoint;
+import org.outerj.daisy.diff.html.dom.TextNode;
+import org.outerj.daisy.diff.html.dom.TokenDictionary;
+
+/**
+ * A comparator over the token ids of a list of text nodes. Equal ids mean
+ * equal text, so the difference search compares array elements instead of
+ * strings. Both sides must have been tokenized with the same
+ * {@link TokenDictionary}.
+ */
+public class TokenComparator implements IRangeComparator {
+
+    /**
+     * The checkpoint is called once every 1024 comparisons.
+     */
+    private static final int CHECK_INTERVAL_MASK = 0x3FF;
+
+    private final int[] tokens;
+
+    private long comparisons;
+
+    private DiffCheckpoint checkpoint = DiffCheckpoint.NONE;
+
+    public TokenComparator(int[] tokens) {
+        this.tokens = tokens;
+    }
+
+    /**
+     * @return a comparator over the ids of the given nodes, or <code>null</code>
+     * if any of them was not tokenized
+     */
+    public static TokenComparator forTextNodes(List<TextNode> textNodes) {
+        int[] tokens = new int[textNodes.size()];
+        int i = 0;
+        for (TextNode textNode : textNodes) {
+            int tokenId = textNode.getTokenId();
+            if (tokenId < 0) {
+                return null;
+            }
+            tokens[i++] = tokenId;
+        }
+        return new TokenComparator(tokens);
+    }
+
+    @Override
+    public int getRangeCount() {
+        return tokens.length;
+    }
+
+    @Override
+    public boolean rangesEqual(int thisIndex, IRangeComparator other, int otherIndex) {
+        if ((++comparisons & CHECK_INTERVAL_MASK) == 0) {
+            checkpoint.check();
+        }
+        return other instanceof TokenComparator
+            && tokens[thisIndex] == ((TokenComparator) other).tokens[otherIndex];
+    }
+
+    @Override
+    public boolean skipRangeComparison(int length, int maxLength, IRangeComparator other) {
+        return false;
+    }
+
+    public int getToken(int index) {
+        return tokens[index];
+    }
+
+    /**
+     * @param checkpoint called regularly by {@link #rangesEqual}, so that the
+     * difference searches running on this comparator can be stopped
+     */
+    public void setCheckpoint(DiffCheckpoint checkpoint) {
+        this.checkpoint = checkpoint;
+    }
+
+    /**
+     * @return the number of calls to {@link #rangesEqual} on this comparator
+     */
+    public long getComparisons() {
+        return comparisons;
+    }
+}
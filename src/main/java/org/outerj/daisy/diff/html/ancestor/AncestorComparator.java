@@ -66,22 +66,17 @@ public class AncestorComparator implements IRangeComparator {
     public AncestorComparatorResult getResult(AncestorComparator other,
             Locale locale) {
 
-        AncestorComparatorResult result = new AncestorComparatorResult();
-
         RangeDifference[] differences = RangeDifferencer.findDifferences(other,
                 this);
 
         if (differences.length == 0)
-            return result;
+            return AncestorComparatorResult.UNCHANGED;
 
         ChangeTextGenerator changeTxt = new ChangeTextGenerator(this, other,
                 locale);
 
-        result.setChanged(true);
-        result.setChanges(changeTxt.getChanged(differences).toString());
-        result.setHtmlLayoutChanges(changeTxt.getHtmlLayoutChanges());
-
-        return result;
+        String changes = changeTxt.getChanged(differences).toString();
+        return new AncestorComparatorResult(true, changes, changeTxt.getHtmlLayoutChanges());
 
     }
 
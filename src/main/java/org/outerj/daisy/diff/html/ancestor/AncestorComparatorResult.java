@@ -15,58 +15,48 @@
  */
 package org.outerj.daisy.diff.html.ancestor;
 
-import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import org.outerj.daisy.diff.html.modification.HtmlLayoutChange;
 
+/**
+ * The outcome of comparing the ancestors of two nodes. Results are immutable,
+ * so one instance can be shared by all the modifications it applies to.
+ */
 public class AncestorComparatorResult {
-	
-	
 
-    private boolean changed = false;
+    /**
+     * Result for ancestors without any difference.
+     */
+    public static final AncestorComparatorResult UNCHANGED = new AncestorComparatorResult(false, null,
+        Collections.<HtmlLayoutChange>emptyList());
 
-    private String changes = null;
-    
-    private List<HtmlLayoutChange> htmlLayoutChanges= null;
-    
-    public AncestorComparatorResult()
-	{
-    	htmlLayoutChanges = new ArrayList<HtmlLayoutChange>();
-	}
+    private final boolean changed;
 
-    public boolean isChanged() {
-        return changed;
-    }
+    private final String changes;
 
-    public void setChanged(boolean changed) {
+    private final List<HtmlLayoutChange> htmlLayoutChanges;
+
+    public AncestorComparatorResult(boolean changed, String changes, List<HtmlLayoutChange> htmlLayoutChanges) {
         this.changed = changed;
+        this.changes = changes;
+        this.htmlLayoutChanges = Collections.unmodifiableList(htmlLayoutChanges);
     }
 
-    public String getChanges() {
-        return changes;
+    public boolean isChanged() {
+        return changed;
     }
 
-    public void setChanges(String changes) {
-        this.changes = changes;
+    public String getChanges() {
+        return changes;
     }
 
 	/**
-	 * @return the htmlChanges
+	 * @return the htmlChanges, which can not be modified
 	 */
 	public List<HtmlLayoutChange> getHtmlLayoutChanges() {
 		return htmlLayoutChanges;
 	}
 
-	/**
-	 * @param htmlLayoutChanges the htmlChanges to set
-	 */
-	public void setHtmlLayoutChanges(List<HtmlLayoutChange> htmlLayoutChanges) {
-		this.htmlLayoutChanges = htmlLayoutChanges;
-	}
-    
-    
-    
-    
-
 }
@@ -20,6 +20,8 @@ import java.util.HashSet;
 import java.util.Locale;
 import java.util.ResourceBundle;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.outerj.daisy.diff.html.ancestor.TagChangeSematic;
 import org.outerj.daisy.diff.html.dom.TagNode;
@@ -30,6 +32,12 @@ public class TagToStringFactory {
 
     private static final Set<String> styleTags = new HashSet<String>();
 
+    /**
+     * The message bundles by locale, looked up once instead of for every
+     * changed tag described.
+     */
+    private static final ConcurrentMap<Locale, ResourceBundle> bundles = new ConcurrentHashMap<Locale, ResourceBundle>();
+
     static {
         containerTags.add("html");
         containerTags.add("body");
@@ -78,7 +86,7 @@ public class TagToStringFactory {
 
     public TagToString create(TagNode node, Locale locale) {
         TagChangeSematic sem = getChangeSemantic(node.getQName());
-        ResourceBundle bundle = ResourceBundle.getBundle(BUNDLE_NAME, locale);
+        ResourceBundle bundle = getBundle(locale);
         if (node.getQName().equalsIgnoreCase("a")) //$NON-NLS-1$
             return new AnchorToString(node, sem, bundle);
         if (node.getQName().equalsIgnoreCase("img")) //$NON-NLS-1$
@@ -86,6 +94,14 @@ public class TagToStringFactory {
         return new TagToString(node, sem, bundle);
     }
 
+    private static ResourceBundle getBundle(Locale locale) {
+        ResourceBundle bundle = bundles.get(locale);
+        if (bundle == null) {
+            bundle = bundles.computeIfAbsent(locale, key -> ResourceBundle.getBundle(BUNDLE_NAME, key));
+        }
+        return bundle;
+    }
+
     protected TagChangeSematic getChangeSemantic(String string) {
         if (containerTags.contains(string.toLowerCase()))
             return TagChangeSematic.MOVED;
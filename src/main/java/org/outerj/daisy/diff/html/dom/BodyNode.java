@@ -32,11 +32,7 @@ public class BodyNode extends TagNode {
     @Override
     public Node copyTree() {
         BodyNode newThis = new BodyNode();
-        for (Node child : this) {
-            Node newChild = child.copyTree();
-            newChild.setParent(newThis);
-            newThis.addChild(newChild);
-        }
+        copyChildrenTo(newThis);
         return newThis;
     }
     
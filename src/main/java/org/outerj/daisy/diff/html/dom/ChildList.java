@@ -0,0 +1,330 @@
+package org.outerj.daisy.diff.html.dom;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The children of a {@link TagNode}, with constant or logarithmic time
+ * lookups of positions.
+ * <p>
+ * While children are only appended, as they are when parsing, they are kept
+ * in an array and every child knows its index ({@link Node#indexInParent}).
+ * The first insertion or removal anywhere else turns the list into a treap
+ * ordered by position, where every entry counts the entries below it: the
+ * position of a child, the child at a position, insertions and removals then
+ * take logarithmic time. Only the tags the markup inserts deleted content
+ * into or splits pay for the tree; code adding many children at once, such
+ * as {@link TagNode#expandWhiteSpace()}, builds a new list instead.
+ */
+class ChildList implements Iterable<Node> {
+
+    private static final Node[] NO_NODES = new Node[0];
+
+    /**
+     * The children while they have only been appended, <code>null</code> once
+     * the list is a tree.
+     */
+    private Node[] array;
+
+    /**
+     * Number of children in {@link #array}.
+     */
+    private int count;
+
+    private Entry root;
+
+    /**
+     * The entry of every child in the tree.
+     */
+    private Map<Node, Entry> entries;
+
+    ChildList() {
+        array = NO_NODES;
+    }
+
+    /**
+     * @param capacity the number of children expected
+     */
+    ChildList(int capacity) {
+        array = capacity == 0 ? NO_NODES : new Node[capacity];
+    }
+
+    int size() {
+        return array != null ? count : size(root);
+    }
+
+    Node get(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+        }
+        if (array != null) {
+            return array[index];
+        }
+        Entry entry = root;
+        while (true) {
+            int leftSize = size(entry.left);
+            if (index < leftSize) {
+                entry = entry.left;
+            } else if (index == leftSize) {
+                return entry.node;
+            } else {
+                index -= leftSize + 1;
+                entry = entry.right;
+            }
+        }
+    }
+
+    void add(Node node) {
+        if (array != null) {
+            if (count == array.length) {
+                array = Arrays.copyOf(array, Math.max(4, count + (count >> 1)));
+            }
+            node.indexInParent = count;
+            array[count++] = node;
+        } else {
+            insert(size(root), node);
+        }
+    }
+
+    void add(int index, Node node) {
+        if (array != null && index == count) {
+            add(node);
+            return;
+        }
+        if (index < 0 || index > size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+        }
+        toTree();
+        insert(index, node);
+    }
+
+    /**
+     * @return the position of the given child, or if it is not one of the
+     * children the position of the first equal one, or -1
+     */
+    int indexOf(Node node) {
+        if (array != null) {
+            int index = node.indexInParent;
+            if (index >= 0 && index < count && array[index] == node) {
+                return index;
+            }
+        } else {
+            Entry entry = entries.get(node);
+            if (entry != null) {
+                return rank(entry);
+            }
+        }
+        int index = 0;
+        for (Node child : this) {
+            if (node.equals(child)) {
+                return index;
+            }
+            index++;
+        }
+        return -1;
+    }
+
+    /**
+     * Removes the given child, or the first child equal to it.
+     */
+    void remove(Node node) {
+        if (array != null) {
+            int index = indexOf(node);
+            if (index == count - 1) {
+                array[--count] = null;
+                return;
+            } else if (index < 0) {
+                return;
+            }
+            toTree();
+        }
+        Entry entry = entries.get(node);
+        if (entry == null) {
+            int index = indexOf(node);
+            if (index < 0) {
+                return;
+            }
+            entry = entries.get(get(index));
+        }
+        Entry[] parts = split(root, rank(entry));
+        Entry[] rest = split(parts[1], 1);
+        root = setRoot(merge(parts[0], rest[1]));
+        entries.remove(entry.node);
+    }
+
+    @Override
+    public Iterator<Node> iterator() {
+        if (array != null) {
+            final Node[] nodes = array;
+            final int size = count;
+            return new Iterator<Node>() {
+
+                private int next;
+
+                @Override
+                public boolean hasNext() {
+                    return next < size;
+                }
+
+                @Override
+                public Node next() {
+                    if (next >= size) {
+                        throw new NoSuchElementException();
+                    }
+                    return nodes[next++];
+                }
+            };
+        }
+        return new Iterator<Node>() {
+
+            private Entry next = root == null ? null : leftmost(root);
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public Node next() {
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+                Entry current = next;
+                next = successor(current);
+                return current.node;
+            }
+        };
+    }
+
+    private void toTree() {
+        if (array == null) {
+            return;
+        }
+        Node[] nodes = array;
+        array = null;
+        root = null;
+        entries = new IdentityHashMap<Node, Entry>(count * 2);
+        for (int i = 0; i < count; i++) {
+            insert(i, nodes[i]);
+        }
+    }
+
+    private void insert(int index, Node node) {
+        Entry entry = new Entry(node);
+        entries.put(node, entry);
+        Entry[] parts = split(root, index);
+        root = setRoot(merge(merge(parts[0], entry), parts[1]));
+    }
+
+    private static Entry setRoot(Entry entry) {
+        if (entry != null) {
+            entry.parent = null;
+        }
+        return entry;
+    }
+
+    private static int size(Entry entry) {
+        return entry == null ? 0 : entry.size;
+    }
+
+    private static void update(Entry entry) {
+        entry.size = 1 + size(entry.left) + size(entry.right);
+        if (entry.left != null) {
+            entry.left.parent = entry;
+        }
+        if (entry.right != null) {
+            entry.right.parent = entry;
+        }
+    }
+
+    private static Entry merge(Entry left, Entry right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+        if (left.priority > right.priority) {
+            left.right = merge(left.right, right);
+            update(left);
+            return left;
+        }
+        right.left = merge(left, right.left);
+        update(right);
+        return right;
+    }
+
+    /**
+     * @return the first <code>count</code> entries and the others
+     */
+    private static Entry[] split(Entry entry, int count) {
+        if (entry == null) {
+            return new Entry[2];
+        }
+        Entry[] parts;
+        if (count <= size(entry.left)) {
+            parts = split(entry.left, count);
+            entry.left = parts[1];
+            update(entry);
+            parts[1] = entry;
+        } else {
+            parts = split(entry.right, count - size(entry.left) - 1);
+            entry.right = parts[0];
+            update(entry);
+            parts[0] = entry;
+        }
+        setRoot(parts[0]);
+        setRoot(parts[1]);
+        return parts;
+    }
+
+    private static int rank(Entry entry) {
+        int rank = size(entry.left);
+        for (Entry current = entry; current.parent != null; current = current.parent) {
+            if (current == current.parent.right) {
+                rank += size(current.parent.left) + 1;
+            }
+        }
+        return rank;
+    }
+
+    private static Entry leftmost(Entry entry) {
+        while (entry.left != null) {
+            entry = entry.left;
+        }
+        return entry;
+    }
+
+    private static Entry successor(Entry entry) {
+        if (entry.right != null) {
+            return leftmost(entry.right);
+        }
+        while (entry.parent != null && entry == entry.parent.right) {
+            entry = entry.parent;
+        }
+        return entry.parent;
+    }
+
+    private static final class Entry {
+
+        final Node node;
+
+        final int priority = ThreadLocalRandom.current().nextInt();
+
+        Entry left;
+
+        Entry right;
+
+        Entry parent;
+
+        int size = 1;
+
+        Entry(Node node) {
+            this.node = node;
+        }
+    }
+}
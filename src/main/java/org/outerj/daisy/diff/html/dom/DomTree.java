@@ -16,6 +16,7 @@
 package org.outerj.daisy.diff.html.dom;
 
 import java.util.List;
+import java.util.function.Predicate;
 
 public interface DomTree {
 
@@ -23,4 +24,21 @@ public interface DomTree {
 
     BodyNode getBodyNode();
 
+    /**
+     * @return <code>true</code> if the text nodes of hidden containers are
+     * already left out of {@link #getTextNodes()}
+     */
+    default boolean isHiddenContentFiltered() {
+        return false;
+    }
+
+    /**
+     * @return the rule recognizing the hidden containers of this tree, used
+     * both to leave their text out of the comparison and to leave it out of
+     * the chunks
+     */
+    default Predicate<TagNode> getHiddenContainerRule() {
+        return TextNodePreprocessor.DISPLAY_NONE_RULE;
+    }
+
 }
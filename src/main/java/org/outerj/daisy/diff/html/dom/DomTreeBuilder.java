@@ -15,14 +15,21 @@
  */
 package org.outerj.daisy.diff.html.dom;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
+import java.util.function.Predicate;
+import org.outerj.daisy.diff.DiffCheckpoint;
 import org.xml.sax.Attributes;
 import org.xml.sax.SAXException;
 import org.xml.sax.helpers.DefaultHandler;
 
 public class DomTreeBuilder extends DefaultHandler implements DomTree {
 
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
     private List<TextNode> textNodes = new ArrayList<TextNode>(50);
     private BodyNode bodyNode = new BodyNode();
     private TagNode currentParent = bodyNode;
@@ -33,6 +40,19 @@ public class DomTreeBuilder extends DefaultHandler implements DomTree {
     private boolean bodyEnded = false;
     private boolean splitByWords = false;
     private boolean addSeparators = false;
+    private TokenDictionary tokenDictionary;
+    private WordCache wordCache;
+
+    /**
+     * Tags matching any of these rules are hidden containers: the text directly
+     * inside them is kept in the tree but is not added to the text nodes.
+     */
+    private List<Predicate<TagNode>> hiddenContainerRules = new ArrayList<Predicate<TagNode>>();
+
+    /**
+     * For every open tag, whether it is a hidden container.
+     */
+    private Deque<Boolean> hiddenContainers = new ArrayDeque<Boolean>();
 
     private boolean whiteSpaceBeforeThis = false;
 
@@ -43,6 +63,13 @@ public class DomTreeBuilder extends DefaultHandler implements DomTree {
 
     private Node lastSibling = null;
 
+    private DiffCheckpoint checkpoint = DiffCheckpoint.NONE;
+
+    /**
+     * Hash of the text and the ancestor signature of every text node added so far.
+     */
+    private long contentHash = FNV_OFFSET_BASIS;
+
     public BodyNode getBodyNode() {
         return bodyNode;
     }
@@ -52,12 +79,67 @@ public class DomTreeBuilder extends DefaultHandler implements DomTree {
     }
 
     public DomTreeBuilder() {
+        hiddenContainerRules.add(TextNodePreprocessor.DISPLAY_NONE_RULE);
     }
 
     public DomTreeBuilder(boolean splitByWords) {
+        this();
         this.splitByWords = splitByWords;
     }
 
+    /**
+     * @param tokenDictionary dictionary used to assign token ids to the text
+     * nodes, shared with the builder of the other document
+     */
+    public DomTreeBuilder(boolean splitByWords, TokenDictionary tokenDictionary) {
+        this(splitByWords);
+        this.tokenDictionary = tokenDictionary;
+        this.wordCache = new WordCache(tokenDictionary);
+    }
+
+    /**
+     * Adds a rule for hidden containers, next to
+     * {@link TextNodePreprocessor#DISPLAY_NONE_RULE}. Rules must be added
+     * before the document is parsed.
+     */
+    public void addHiddenContainerRule(Predicate<TagNode> rule) {
+        hiddenContainerRules.add(rule);
+    }
+
+    /**
+     * @return a rule matching the tags matched by any of the rules of this
+     * builder
+     */
+    @Override
+    public Predicate<TagNode> getHiddenContainerRule() {
+        return this::isHiddenContainer;
+    }
+
+    /**
+     * @param checkpoint called for every block of characters, so that parsing
+     * can be stopped
+     */
+    public void setCheckpoint(DiffCheckpoint checkpoint) {
+        this.checkpoint = checkpoint;
+    }
+
+    /**
+     * Returns a hash of the text nodes in document order, each hashed by its
+     * text and its {@link Node#getAncestorSignature() ancestor signature}.
+     * Documents with different hashes have different text nodes, so there is
+     * something to diff in them; equal hashes are only a strong hint that the
+     * documents are the same.
+     * @return the hash of the text nodes parsed so far
+     */
+    public long getContentHash() {
+        return contentHash;
+    }
+
+    @Override
+    public boolean isHiddenContentFiltered() {
+        return true;
+    }
+
     @Override
     public void startDocument() throws SAXException {
         if (documentStarted)
@@ -86,6 +168,7 @@ public class DomTreeBuilder extends DefaultHandler implements DomTree {
 
             TagNode newTagNode = new TagNode(currentParent, localName, attributes);
             currentParent = newTagNode;
+            hiddenContainers.push(isHiddenContainer(newTagNode));
             lastSibling = null;
             if (whiteSpaceBeforeThis && newTagNode.isInline()) {
                 newTagNode.setWhiteBefore(true);
@@ -121,7 +204,7 @@ public class DomTreeBuilder extends DefaultHandler implements DomTree {
                     .getAttributes());
                 img.setWhiteBefore(whiteSpaceBeforeThis);
                 lastSibling = img;
-                textNodes.add(img);
+                addTextNode(img);
             }
             endWord();
             if (currentParent.isInline()) {
@@ -136,6 +219,7 @@ public class DomTreeBuilder extends DefaultHandler implements DomTree {
                 addSeparatorNode();
             }
             currentParent = currentParent.getParent();
+            hiddenContainers.pop();
             whiteSpaceBeforeThis = false;
         }
     }
@@ -147,6 +231,8 @@ public class DomTreeBuilder extends DefaultHandler implements DomTree {
         if (!documentStarted || documentEnded)
             throw new IllegalStateException();
 
+        checkpoint.check();
+
         if (splitByWords) {
             for (int i = start; i < start + length; i++) {
                 char c = ch[i];
@@ -157,11 +243,8 @@ public class DomTreeBuilder extends DefaultHandler implements DomTree {
                             lastSibling.setWhiteAfter(true);
                         whiteSpaceBeforeThis = true;
                     } else {
-                        TextNode textNode = new TextNode(currentParent, Character.toString(c));
-                        textNode.setWhiteBefore(whiteSpaceBeforeThis);
-                        whiteSpaceBeforeThis = false;
-                        lastSibling = textNode;
-                        textNodes.add(textNode);
+                        newWord.append(c);
+                        endWord();
 
                     }
                 } else {
@@ -173,17 +256,50 @@ public class DomTreeBuilder extends DefaultHandler implements DomTree {
         }
     }
 
+    /**
+     * Adds the word read so far as a text node. With a {@link TokenDictionary}
+     * the node gets the interned text of the word, shared with the equal
+     * words of both documents.
+     */
     private void endWord() {
         if (newWord.length() > 0) {
-            TextNode node = new TextNode(currentParent, newWord.toString());
+            TextNode node;
+            if (wordCache != null) {
+                TokenDictionary.Token token = wordCache.get(newWord);
+                node = new TextNode(currentParent, token.text);
+                node.setTokenId(token.id);
+            } else {
+                node = new TextNode(currentParent, newWord.toString());
+            }
             node.setWhiteBefore(whiteSpaceBeforeThis);
             whiteSpaceBeforeThis = false;
             lastSibling = node;
-            textNodes.add(node);
+            addTextNode(node);
             newWord.setLength(0);
         }
     }
 
+    private boolean isHiddenContainer(TagNode tagNode) {
+        for (Predicate<TagNode> rule : hiddenContainerRules) {
+            if (rule.test(tagNode)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void addTextNode(TextNode node) {
+        if (!hiddenContainers.isEmpty() && hiddenContainers.peek()) {
+            return;
+        }
+        if (tokenDictionary != null && node.getTokenId() < 0) {
+            node.setTokenId(tokenDictionary.getTokenId(node.getText()));
+        }
+        contentHash = (contentHash ^ node.getText().hashCode()) * FNV_PRIME;
+        contentHash = (contentHash ^ node.getAncestorSignature()) * FNV_PRIME;
+        textNodes.add(node);
+    }
+
     /**
      * Returns <code>true</code> if the given tag separates text nodes
      * from being successive. I.e. every block starts a new distinct text flow.
@@ -209,7 +325,7 @@ public class DomTreeBuilder extends DefaultHandler implements DomTree {
             return;
         }
 
-        textNodes.add(new SeparatingNode(currentParent));
+        addTextNode(new SeparatingNode(currentParent));
     }
 
     public static boolean isDelimiter(char c) {
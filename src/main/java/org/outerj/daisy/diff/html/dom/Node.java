@@ -29,6 +29,20 @@ public abstract class Node {
     protected TagNode parent;
     private TagNode root;
 
+    /**
+     * Cached result of {@link #getAncestorSignature()}, reset with the
+     * ancestors whenever this node or one of its ancestors gets another parent.
+     */
+    private long ancestorSignature;
+    private boolean ancestorSignatureValid = false;
+
+    /**
+     * Position of this node among the children of its parent while they are
+     * kept in an array, see {@link ChildList}; may be stale, so always
+     * checked against the children before use.
+     */
+    int indexInParent = -1;
+
     /**
      * This constructor not only sets the parameter as the parent for the
      * created node, but also appends the created node to the collection
@@ -62,12 +76,53 @@ public abstract class Node {
      * <code>List&lt;TagNode></code> if the parent is null.
      */
     public List<TagNode> getParentTree() {
-        List<TagNode> ancestors = new ArrayList<TagNode>();
-        for (TagNode ancestor = getParent(); ancestor != null; ancestor = ancestor.getParent()) {
-            ancestors.add(ancestor);
+        return new ArrayList<TagNode>(getAncestors());
+    }
+
+    /**
+     * Returns the same ancestors as {@link #getParentTree()}, without copying
+     * them: the list is built once per parent, shared by all its children and
+     * rebuilt after this node or one of its ancestors gets another parent.
+     * @return unmodifiable list of the ancestors ordered by depth, valid
+     * until the tree is changed
+     */
+    public List<TagNode> getAncestors() {
+        return parent == null ? Collections.<TagNode>emptyList() : parent.getChildAncestors();
+    }
+
+    /**
+     * @return the number of ancestors of this node, 0 for the root
+     */
+    public int getDepth() {
+        return getAncestors().size();
+    }
+
+    /**
+     * Returns a hash of the tag names and the normalized attributes of all
+     * the ancestors of this node. Nodes from different trees whose ancestors
+     * are all equivalent (see {@link TagNode#isSameTag(TagNode)}) have the
+     * same signature, so a difference in signature proves that the ancestry
+     * has changed.
+     * @return the signature of {@link #getParentTree()}
+     */
+    public long getAncestorSignature() {
+        if (!ancestorSignatureValid) {
+            ancestorSignature = parent == null ? 0 : parent.getPathSignature();
+            ancestorSignatureValid = true;
         }
-        Collections.reverse(ancestors);
-        return ancestors;
+        return ancestorSignature;
+    }
+
+    protected void invalidateAncestors() {
+        ancestorSignatureValid = false;
+    }
+
+    /**
+     * @return whether anything derived from the ancestors of this node is
+     * cached
+     */
+    protected boolean hasCachedAncestors() {
+        return ancestorSignatureValid;
     }
 
     //change for correct insertion of the deleted nodes
@@ -114,8 +169,8 @@ public abstract class Node {
 
         //note that these lists are never null,
         //but sometimes are empty.
-        List<TagNode> myParents = getParentTree();
-        List<TagNode> otherParents = other.getParentTree();
+        List<TagNode> myParents = getAncestors();
+        List<TagNode> otherParents = other.getAncestors();
 
         int i = 1;
         boolean isSame = true;
@@ -157,6 +212,7 @@ public abstract class Node {
      */
     public void setParent(TagNode parent) {
         this.parent = parent;
+        invalidateAncestors();
         if (parent != null)
             setRoot(parent.getRoot());
     }
@@ -174,8 +230,9 @@ public abstract class Node {
      * where this node is &lt;pre> tag)
      */
     public boolean inPre() {
-        for (TagNode ancestor : getParentTree()) {
-            if (ancestor.isPre()) {
+        List<TagNode> ancestors = getAncestors();
+        for (int i = 0; i < ancestors.size(); i++) {
+            if (ancestors.get(i).isPre()) {
                 return true;
             }
         }
@@ -28,17 +28,31 @@ import org.xml.sax.helpers.AttributesImpl;
  */
 public class TagNode extends Node implements Iterable<Node> {
 
-    private List<Node> children = new ArrayList<Node>();
+    private ChildList children = new ChildList();
 
     private String qName;
 
     private final Attributes attributes;
 
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    /**
+     * Cached result of {@link #getTagSignature()}, the name and the attributes never change.
+     */
+    private long tagSignature;
+    private boolean tagSignatureComputed = false;
+
     /**
-     * Attributes objects are unmodifiable and {@link #attributes} is final, so we can usefully cache the
-     * equality of ours to others.
+     * Cached result of {@link #getCanonicalForm()}.
      */
-    private IdentityHashMap<Attributes, Boolean> attributesEqualityTests = new IdentityHashMap<Attributes, Boolean>();
+    private String[] canonicalForm;
+
+    /**
+     * The ancestors of the children of this tag, built on first use and
+     * shared by all of them.
+     */
+    private List<TagNode> childAncestors;
 
     public TagNode(TagNode parent, String qName, Attributes attributesarg) {
         super(parent);
@@ -63,6 +77,105 @@ public class TagNode extends Node implements Iterable<Node> {
         children.add(node);
     }
 
+    /**
+     * Stops at tags with nothing cached: the caches of a node are built from
+     * those of its parent, so the nodes below have nothing cached either.
+     * Nodes of a tree being built or copied are never walked.
+     */
+    @Override
+    protected void invalidateAncestors() {
+        if (!hasCachedAncestors()) {
+            return;
+        }
+        super.invalidateAncestors();
+        childAncestors = null;
+        for (Node child : children) {
+            child.invalidateAncestors();
+        }
+    }
+
+    @Override
+    protected boolean hasCachedAncestors() {
+        return super.hasCachedAncestors() || childAncestors != null;
+    }
+
+    /**
+     * @return the ancestors of this tag followed by this tag, see
+     * {@link #getAncestors()}
+     */
+    List<TagNode> getChildAncestors() {
+        if (childAncestors == null) {
+            List<TagNode> ancestors = getAncestors();
+            TagNode[] path = ancestors.toArray(new TagNode[ancestors.size() + 1]);
+            path[ancestors.size()] = this;
+            childAncestors = Collections.unmodifiableList(Arrays.asList(path));
+        }
+        return childAncestors;
+    }
+
+    /**
+     * Returns a 64 bit hash of the lower case tag name and the attributes,
+     * where the values of "style" and "class" are normalized the same way
+     * {@link AttributesMap} compares them. Similar tags (see
+     * {@link #isSimilarTag(Node)}) therefore have the same signature.
+     */
+    public long getTagSignature() {
+        if (!tagSignatureComputed) {
+            long hash = FNV_OFFSET_BASIS;
+            for (String part : getCanonicalForm()) {
+                hash = hash(hash, part);
+            }
+            tagSignature = hash;
+            tagSignatureComputed = true;
+        }
+        return tagSignature;
+    }
+
+    /**
+     * Returns the lower case tag name followed by the sorted attribute names,
+     * each followed by its value, where the values of "style" and "class" are
+     * normalized. Similar tags have equal canonical forms.
+     */
+    private String[] getCanonicalForm() {
+        if (canonicalForm == null) {
+            AttributesMap attributesMap = getAttributesMap();
+            String[] names = attributesMap.keySet().toArray(new String[attributesMap.size()]);
+            Arrays.sort(names);
+            String[] form = new String[1 + 2 * names.length];
+            form[0] = getQName().toLowerCase();
+            for (int i = 0; i < names.length; i++) {
+                String name = names[i];
+                String value = attributesMap.get(name);
+                if (name.equals("style")) {
+                    value = AttributesMap.normalizeStyleString(value);
+                } else if (name.equals("class")) {
+                    value = AttributesMap.normalizeClassString(value);
+                }
+                form[1 + 2 * i] = name;
+                form[2 + 2 * i] = value;
+            }
+            canonicalForm = form;
+        }
+        return canonicalForm;
+    }
+
+    /**
+     * @return the signature of the ancestors of this tag followed by this tag,
+     * which is the ancestor signature of its children
+     * @see #getAncestorSignature()
+     */
+    public long getPathSignature() {
+        return (getAncestorSignature() ^ getTagSignature()) * FNV_PRIME + 1;
+    }
+
+    private static long hash(long hash, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            hash = (hash ^ value.charAt(i)) * FNV_PRIME;
+        }
+        // separates consecutive strings
+        return (hash ^ value.length()) * FNV_PRIME;
+    }
+
     @Override
     protected void setRoot(TagNode root)
     {
@@ -199,19 +312,6 @@ public class TagNode extends Node implements Iterable<Node> {
 	return false;
     }
 
-    private boolean hasSameAttributes(final Attributes otherAttributes)
-    {
-        if (otherAttributes == null) {
-			return false;
-		}
-        if (attributesEqualityTests.get(otherAttributes) != null) {
-			return attributesEqualityTests.get(otherAttributes);
-		}
-        boolean result = getAttributesMap().hasSameAttributes(otherAttributes);
-        attributesEqualityTests.put(otherAttributes, result);
-        return result;
-    }
-
     private AttributesMap getAttributesMap()
     {
         return new AttributesMap(getAttributes());
@@ -221,18 +321,18 @@ public class TagNode extends Node implements Iterable<Node> {
      * Returns <code>true</code> if this tag is similar to the given other tag.
      * The tags may be from different trees. If the tag name and attributes
      * are the same, the result will be <code>true</code>.
+     * The cached tag signatures are compared first, the canonical forms
+     * only when the signatures are the same.
      * @param another the tag to compare with
      * @return wether this tag is similar to the other node
      */
     protected boolean isSimilarTag(Node another) {
-    	boolean result = false;
     	if (another instanceof TagNode) {
     		TagNode otherNode = (TagNode) another;
-    		if (this.getQName().equalsIgnoreCase(otherNode.getQName())) {
-    			result = hasSameAttributes(otherNode.getAttributes());
-    		}
+    		return getTagSignature() == otherNode.getTagSignature()
+    		    && Arrays.equals(getCanonicalForm(), otherNode.getCanonicalForm());
     	}
-		return result;
+		return false;
     }
 
     /**
@@ -240,15 +340,13 @@ public class TagNode extends Node implements Iterable<Node> {
      * <code>equals</code> method, we need to re-write 
      * <code>hashCode</code> method to correspond. Otherwise 
      * <code>HashTable</code>s and <code>HashMaps</code> might
-     * behave unexpectedly.
+     * behave unexpectedly. Similar tags have the same tag signature, which
+     * is computed once.
      */
     @Override
     public int hashCode(){
-    	final int simple = 29;
-    	int result = this.getQName().hashCode();
-        AttributesMap attrs = getAttributesMap();
-        result = result*simple + attrs.hashCode();
-    	return result;
+    	long signature = getTagSignature();
+    	return (int) (signature ^ (signature >>> 32));
     }
     
     /**
@@ -468,16 +566,41 @@ public class TagNode extends Node implements Iterable<Node> {
 
     @Override
     public Node copyTree() {
+        TagNode newThis = copyTag();
+        copyChildrenTo(newThis);
+        return newThis;
+    }
+
+    /**
+     * @return a copy of this tag without its children
+     */
+    private TagNode copyTag() {
         TagNode newThis = new TagNode(null, getQName(), new AttributesImpl(
                 getAttributes()));
         newThis.setWhiteBefore(isWhiteBefore());
         newThis.setWhiteAfter(isWhiteAfter());
+        return newThis;
+    }
+
+    /**
+     * Appends copies of the children of this tag to the given tag. Tags are
+     * copied from the top down: every copy gets its parent while it has no
+     * children yet, so that setting the parent walks no subtree.
+     */
+    void copyChildrenTo(TagNode newThis) {
         for (Node child : this) {
-            Node newChild = child.copyTree();
-            newChild.setParent(newThis);
-            newThis.addChild(newChild);
+            if (child.getClass() == TagNode.class) {
+                TagNode tagChild = (TagNode) child;
+                TagNode newChild = tagChild.copyTag();
+                newChild.setParent(newThis);
+                newThis.addChild(newChild);
+                tagChild.copyChildrenTo(newChild);
+            } else {
+                Node newChild = child.copyTree();
+                newChild.setParent(newThis);
+                newThis.addChild(newChild);
+            }
         }
-        return newThis;
     }
 
     public double getMatchRatio(TagNode other) {
@@ -485,14 +608,18 @@ public class TagNode extends Node implements Iterable<Node> {
         return txtComp.getMatchRatio(new TextOnlyComparator(this));
     }
 
+    /**
+     * Adds a {@link WhiteSpaceNode} wherever a child has white space before
+     * or after it, in this tag and the tags below it except pre tags. The
+     * children are rebuilt in one pass and stay in a plain array, see
+     * {@link ChildList}.
+     */
     public void expandWhiteSpace() {
 
-        int shift = 0;
         boolean spaceAdded = false;
 
-        int nbOriginalChildren = getNbChildren();
-        for (int i = 0; i < nbOriginalChildren; i++) {
-            Node child = getChild(i + shift);
+        ChildList expanded = new ChildList(getNbChildren());
+        for (Node child : children) {
             try {
                 TagNode tagChild = (TagNode) child;
 
@@ -506,19 +633,21 @@ public class TagNode extends Node implements Iterable<Node> {
                 WhiteSpaceNode ws = new WhiteSpaceNode(null, " ", child
                         .getLeftMostChild());
                 ws.setParent(this);
-                addChild(i + (shift++), ws);
+                expanded.add(ws);
             }
+            expanded.add(child);
             if (child.isWhiteAfter()) {
                 WhiteSpaceNode ws = new WhiteSpaceNode(null, " ", child
                         .getRightMostChild());
                 ws.setParent(this);
-                addChild(i + 1 + (shift++), ws);
+                expanded.add(ws);
                 spaceAdded = true;
             } else {
                 spaceAdded = false;
             }
 
         }
+        children = expanded;
     }
 
     @Override
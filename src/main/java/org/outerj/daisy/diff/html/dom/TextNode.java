@@ -30,9 +30,15 @@ public class TextNode extends Node implements Cloneable {
 
     private Modification modification;
 
+    /**
+     * Id of the text in the {@link TokenDictionary} of the diff, or -1 if
+     * the node was not tokenized.
+     */
+    private int tokenId = -1;
+
     public TextNode(TagNode parent, String s) {
         super(parent);
-        this.modification = new Modification(ModificationType.NONE, ModificationType.NONE);
+        this.modification = Modification.NONE;
         this.s = s;
     }
 
@@ -87,6 +93,14 @@ public class TextNode extends Node implements Cloneable {
         }
     }
 
+    public int getTokenId() {
+        return tokenId;
+    }
+
+    public void setTokenId(int tokenId) {
+        this.tokenId = tokenId;
+    }
+
     public void setModification(Modification m) {
         this.modification = m;
     }
@@ -1,11 +1,15 @@
 package org.outerj.daisy.diff.html.dom;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Objects;
+import java.util.Set;
 import java.util.SortedMap;
 import java.util.TreeMap;
+import java.util.function.Predicate;
 
 /**
  * Created by d.kalach on 6/22/17.
@@ -13,15 +17,31 @@ import java.util.TreeMap;
 public class TextNodePreprocessor {
     private static final String DISPLAY_NONE_CLASS = "color__800000 display_none";
     private static final String CLASS_ATTRIBUTE = "class";
+
+    /**
+     * Recognizes the containers of hidden text, whose text nodes are not diffed.
+     */
+    public static final Predicate<TagNode> DISPLAY_NONE_RULE =
+        tag -> Objects.equals(DISPLAY_NONE_CLASS, tag.getAttributes().getValue(CLASS_ATTRIBUTE));
     private static final int NEXT_NODES_IN_SEGMENT_DEFINITION = 5;
     private BodyNode bodyNode;
     private List<TextNode> textNodes;
+    private Predicate<TagNode> hiddenContainerRule;
     private SortedMap<String, List<TextNode>> segments = new TreeMap<>();
 
 
     public TextNodePreprocessor(BodyNode bodyNode, List<TextNode> textNodes) {
+        this(bodyNode, textNodes, DISPLAY_NONE_RULE);
+    }
+
+    /**
+     * @param hiddenContainerRule recognizes the containers whose text is left
+     * out of the segments, see {@link DomTree#getHiddenContainerRule()}
+     */
+    public TextNodePreprocessor(BodyNode bodyNode, List<TextNode> textNodes, Predicate<TagNode> hiddenContainerRule) {
         this.bodyNode = bodyNode;
         this.textNodes = textNodes;
+        this.hiddenContainerRule = hiddenContainerRule;
     }
 
     public SortedMap<String, List<TextNode>> collectSegmentNodes() {
@@ -29,23 +49,40 @@ public class TextNodePreprocessor {
         return segments;
     }
 
+    /**
+     * Removes the text nodes directly inside hidden containers from the given
+     * list. Trees built by {@link DomTreeBuilder} leave these nodes out while
+     * parsing, this is only needed for other trees.
+     */
     public static void removeUnprocessableNodes(TagNode parent, List<TextNode> textNodes) {
-        TextNodePreprocessor.removeUnprocessableNodesRecursive(parent, textNodes);
+        removeUnprocessableNodes(parent, textNodes, DISPLAY_NONE_RULE);
+    }
+
+    /**
+     * @param hiddenContainerRule recognizes the hidden containers
+     */
+    public static void removeUnprocessableNodes(TagNode parent, List<TextNode> textNodes,
+                                                Predicate<TagNode> hiddenContainerRule) {
+        Set<Node> hiddenNodes = Collections.newSetFromMap(new IdentityHashMap<Node, Boolean>());
+        TextNodePreprocessor.collectUnprocessableNodes(parent, hiddenNodes, hiddenContainerRule);
+        if (!hiddenNodes.isEmpty()) {
+            textNodes.removeIf(hiddenNodes::contains);
+        }
     }
 
-    private static void removeUnprocessableNodesRecursive(TagNode parent, List<TextNode> textNodes) {
+    private static void collectUnprocessableNodes(TagNode parent, Set<Node> hiddenNodes,
+                                                  Predicate<TagNode> hiddenContainerRule) {
         for (Node current : parent) {
             if (current instanceof TagNode) {
                 TagNode currentTag = (TagNode) current;
-                if (Objects.equals(DISPLAY_NONE_CLASS, currentTag.getAttributes().getValue(CLASS_ATTRIBUTE))) {
+                if (hiddenContainerRule.test(currentTag)) {
                     for (Node child : currentTag) {
                         if (child instanceof TextNode) {
-                            // Batch removing is significantly slower!
-                            textNodes.remove(child);
+                            hiddenNodes.add(child);
                         }
                     }
                 } else {
-                    removeUnprocessableNodesRecursive(currentTag, textNodes);
+                    collectUnprocessableNodes(currentTag, hiddenNodes, hiddenContainerRule);
                 }
             }
         }
@@ -65,7 +102,7 @@ public class TextNodePreprocessor {
                     segments.put(currentSegmentId, currentTextNodes);
                     currentSegmentId = segmentId;
                     currentTextNodes = new ArrayList<>();
-                } else if (!Objects.equals(DISPLAY_NONE_CLASS, currentTag.getAttributes().getValue(CLASS_ATTRIBUTE))) {
+                } else if (!hiddenContainerRule.test(currentTag)) {
                     collectSegmentNodes(currentTag);
                 }
             } else if (current instanceof TextNode) {
@@ -0,0 +1,67 @@
+package org.outerj.daisy.diff.html.dom;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Assigns a small integer id to every distinct token text. One dictionary is
+ * shared by the builders of both documents of a diff, so equal words in the
+ * old and the new document get the same id and can be compared as ints.
+ * <p>
+ * The dictionary also interns the texts: the text nodes of both documents
+ * built with it share one String for every distinct token.
+ */
+public class TokenDictionary {
+
+    private final ConcurrentMap<String, Token> tokens = new ConcurrentHashMap<String, Token>();
+
+    private final AtomicInteger nextId = new AtomicInteger();
+
+    /**
+     * @param text the text of a token
+     * @return the id of the given text, assigning the next free id if the
+     * text was not seen before
+     */
+    public int getTokenId(String text) {
+        return getToken(text).id;
+    }
+
+    /**
+     * @param text the text of a token
+     * @return the interned text, equal to the given one
+     */
+    public String intern(String text) {
+        return getToken(text).text;
+    }
+
+    Token getToken(String text) {
+        Token token = tokens.get(text);
+        if (token == null) {
+            token = tokens.computeIfAbsent(text, key -> new Token(key, nextId.getAndIncrement()));
+        }
+        return token;
+    }
+
+    /**
+     * @return the number of distinct tokens seen so far
+     */
+    public int size() {
+        return tokens.size();
+    }
+
+    /**
+     * The interned text of a token and its id.
+     */
+    static final class Token {
+
+        final String text;
+
+        final int id;
+
+        Token(String text, int id) {
+            this.text = text;
+            this.id = id;
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package org.outerj.daisy.diff.html.dom;
+
+/**
+ * A small direct-mapped cache in front of a {@link TokenDictionary}, used by
+ * one {@link DomTreeBuilder} to look up the words it reads without creating
+ * a String for each of them. The words of a document are mostly a few
+ * frequent ones, which stay in the cache; a word missing from it is looked up
+ * in the dictionary and replaces the entry of its slot. Not thread-safe.
+ */
+class WordCache {
+
+    private static final int SIZE = 1024;
+
+    private final TokenDictionary dictionary;
+
+    private final TokenDictionary.Token[] entries = new TokenDictionary.Token[SIZE];
+
+    WordCache(TokenDictionary dictionary) {
+        this.dictionary = dictionary;
+    }
+
+    /**
+     * @param word the characters of the word, read but not kept
+     * @return the token of the word, with its interned text
+     */
+    TokenDictionary.Token get(CharSequence word) {
+        int length = word.length();
+        int hash = 0;
+        for (int i = 0; i < length; i++) {
+            hash = 31 * hash + word.charAt(i);
+        }
+        int slot = (hash ^ (hash >>> 16)) & (SIZE - 1);
+        TokenDictionary.Token token = entries[slot];
+        if (token != null && token.text.hashCode() == hash && contentEquals(token.text, word)) {
+            return token;
+        }
+        token = dictionary.getToken(word.toString());
+        entries[slot] = token;
+        return token;
+    }
+
+    private static boolean contentEquals(String text, CharSequence word) {
+        int length = word.length();
+        if (text.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (text.charAt(i) != word.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
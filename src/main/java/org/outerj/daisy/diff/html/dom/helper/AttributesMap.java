@@ -3,6 +3,7 @@ package org.outerj.daisy.diff.html.dom.helper;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.regex.Pattern;
 
 import org.xml.sax.Attributes;
 /**
@@ -44,6 +45,31 @@ public class AttributesMap extends HashMap<String, String> {
 	 */
 	protected static final String NL_TAB_REGEXP = "\\n|\\t";
 
+	/*
+	 * The regular expressions used to normalize the values, compiled once
+	 * as they are used for every comparison of "style" and "class" values.
+	 */
+	private static final Pattern NL_TAB = Pattern.compile(NL_TAB_REGEXP);
+
+	private static final Pattern SPACES = Pattern.compile(SPACE + "++");
+
+	/**
+	 * style rules in the style attribute value are
+	 * separated by semicolon with any amount of space on either side.
+	 * Notice, that this delimiter will "eat up" all the empty styles
+	 * like in this case: "prop1:val1  ;  ;  ;;;; prop2 : val2".
+	 * Atomic group and possessive quantifier used to speed up regexp
+	 */
+	private static final Pattern STYLE_DELIM = Pattern.compile(SPACE + "*+(?>;" + SPACE + "*+)++");
+
+	private static final Pattern COLON_W_SPACES = Pattern.compile(SPACE + "*+:" + SPACE + "*+");
+
+	/**
+	 * multiple class names are separated by any amount of spaces,
+	 * "++" is possessive quantifier
+	 */
+	private static final Pattern CLASS_DELIM = SPACES;
+
 	public AttributesMap() {
 		super();
 	}
@@ -168,11 +194,11 @@ public class AttributesMap extends HashMap<String, String> {
 		//no nulls at this point
 		//get rid of the new line symbols and tabulation
 		//substituting them with spaces to not "jam" separate tokens together 
-		style1 = style1.replaceAll(NL_TAB_REGEXP, SPACE);
-		style2 = style2.replaceAll(NL_TAB_REGEXP, SPACE);
+		style1 = NL_TAB.matcher(style1).replaceAll(SPACE);
+		style2 = NL_TAB.matcher(style2).replaceAll(SPACE);
 		//get rid of consecutive spaces
-		style1 = style1.replaceAll(SPACE + "++", SPACE);
-		style2 = style2.replaceAll(SPACE + "++", SPACE);
+		style1 = SPACES.matcher(style1).replaceAll(SPACE);
+		style2 = SPACES.matcher(style2).replaceAll(SPACE);
 		//get rid of leading/trailing spaces
 		style1 = style1.trim();
 		style2 = style2.trim();
@@ -182,18 +208,9 @@ public class AttributesMap extends HashMap<String, String> {
 			//and text positioning with tabs/new lines
 			return true;
 		}
-		//style rules in the style attribute value are
-		//separated by semicolon with any amount of space on either side
-		final char SEMICOLON = ';';
-		//notice, that this delimiter will "eat up" all the empty styles
-		//like in this case: "prop1:val1  ;  ;  ;;;; prop2 : val2"
-		//you will only get 2 tokens and this: "  ;  ;  ;;;; " will be 
-		//considered as a single delimiter.
-		//atomic group and possessive quantifier used to speed up regexp
-		final String DELIM = SPACE + "*+(?>" + SEMICOLON + SPACE + "*+)++";
-		//split those to CSS property name : value pairs
-		String[] styleRules1 = style1.split(DELIM);
-		String[] styleRules2 = style2.split(DELIM);
+		//split those to CSS property name : value pairs, see STYLE_DELIM
+		String[] styleRules1 = STYLE_DELIM.split(style1);
+		String[] styleRules2 = STYLE_DELIM.split(style2);
 		//should be the same amount of properties, or it's not equivalent
 		if (styleRules1.length != styleRules2.length){
 			return false;
@@ -203,14 +220,12 @@ public class AttributesMap extends HashMap<String, String> {
 		Arrays.sort(styleRules2);
 		//remove the spaces between property name,
 		//the colon and the value 
-		final String COLON_W_SPACES = 
-			SPACE + "*+:" + SPACE + "*+";
 		final String COLON = ":";
 		for (int i = 0; i < styleRules1.length; i++){
 			styleRules1[i] = 
-				styleRules1[i].replaceFirst(COLON_W_SPACES, COLON);
+				COLON_W_SPACES.matcher(styleRules1[i]).replaceFirst(COLON);
 			styleRules2[i] = 
-				styleRules2[i].replaceFirst(COLON_W_SPACES, COLON);
+				COLON_W_SPACES.matcher(styleRules2[i]).replaceFirst(COLON);
 			if (!styleRules1[i].equals(styleRules2[i])){
 				return false;
 			}
@@ -244,8 +259,8 @@ public class AttributesMap extends HashMap<String, String> {
 		}
 		//no nulls at this point
 		//get rid of new line and tabulation symbols
-		classSet1 = classSet1.replaceAll(NL_TAB_REGEXP, SPACE);
-		classSet2 = classSet2.replaceAll(NL_TAB_REGEXP, SPACE);
+		classSet1 = NL_TAB.matcher(classSet1).replaceAll(SPACE);
+		classSet2 = NL_TAB.matcher(classSet2).replaceAll(SPACE);
 		//trim leading/trailing spaces
 		classSet1 = classSet1.trim();
 		classSet2 = classSet2.trim();
@@ -257,10 +272,8 @@ public class AttributesMap extends HashMap<String, String> {
 		}
 		//multiple class names in the class attributes
 		//are separated by spaces - split into array of single classes
-		final String DELIM = SPACE + "++";//"++" is possessive quantifier
-		//splitting by any amount of spaces in between
-		String[] set1 = classSet1.split(DELIM);
-		String[] set2 = classSet2.split(DELIM);
+		String[] set1 = CLASS_DELIM.split(classSet1);
+		String[] set2 = CLASS_DELIM.split(classSet2);
 		//should be the same amount of classes, or it's not equivalent
 		if (set1.length != set2.length){
 			return false;
@@ -289,36 +302,25 @@ public class AttributesMap extends HashMap<String, String> {
 		//no nulls at this point
 		//get rid of the new line symbols and tabulation
 		//substituting them with spaces to not "jam" separate tokens together 
-		styleVal = styleVal.replaceAll(NL_TAB_REGEXP, SPACE);
+		styleVal = NL_TAB.matcher(styleVal).replaceAll(SPACE);
 		//get rid of consecutive spaces
-		styleVal = styleVal.replaceAll(SPACE + "++", SPACE);
+		styleVal = SPACES.matcher(styleVal).replaceAll(SPACE);
 		//get rid of leading/trailing spaces
 		styleVal = styleVal.trim();
 		//check if they there's anything left
 		if (styleVal.length() == 0){
 			return styleVal;
 		}
-		//style rules in the style attribute value are
-		//separated by semicolon with any amount of space on either side
-		final char SEMICOLON = ';';
-		//notice, that this delimiter will "eat up" all the empty styles
-		//like in this case: "prop1:val1  ;  ;  ;;;; prop2 : val2"
-		//you will only get 2 tokens and this: "  ;  ;  ;;;; " will be 
-		//considered as a single delimiter.
-		//atomic group and possessive quantifier used to speed up regexp
-		final String DELIM = SPACE + "*+(?>" + SEMICOLON + SPACE + "*+)++";
-		//split those to CSS property name : value pairs
-		String[] styleRules = styleVal.split(DELIM);
+		//split those to CSS property name : value pairs, see STYLE_DELIM
+		String[] styleRules = STYLE_DELIM.split(styleVal);
 		//sort by CSS property name
 		Arrays.sort(styleRules);
 		//remove the spaces between property name,
 		//the colon and the value 
-		final String COLON_W_SPACES = 
-			SPACE + "*+:" + SPACE + "*+";
 		final String COLON = ":";
 		StringBuffer result = new StringBuffer();
 		for (int i = 0; i < styleRules.length; i++){
-			result.append(styleRules[i].replaceFirst(COLON_W_SPACES, COLON))
+			result.append(COLON_W_SPACES.matcher(styleRules[i]).replaceFirst(COLON))
 				  .append("; ");
 		}
 		//take away last trailing "; "
@@ -343,14 +345,12 @@ public class AttributesMap extends HashMap<String, String> {
 		}
 		//no nulls at this point
 		//get rid of new line and tabulation symbols
-		classVal = classVal.replaceAll(NL_TAB_REGEXP, SPACE);
+		classVal = NL_TAB.matcher(classVal).replaceAll(SPACE);
 		//trim leading/trailing spaces
 		classVal = classVal.trim();
 		//multiple class names in the class attributes
 		//are separated by spaces - split into array of single classes
-		final String DELIM = SPACE + "++";//"++" is possessive quantifier
-		//splitting by any amount of spaces in between
-		String[] classNames = classVal.split(DELIM);
+		String[] classNames = CLASS_DELIM.split(classVal);
 		//sorting classes
 		Arrays.sort(classNames);
 		StringBuffer result = new StringBuffer();
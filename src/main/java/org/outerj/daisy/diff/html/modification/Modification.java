@@ -19,6 +19,14 @@ import java.util.List;
 
 public class Modification implements Cloneable {
 
+    /**
+     * The modification of all the text nodes that are not changed, shared
+     * by the nodes and immutable: its setters throw an
+     * {@link UnsupportedOperationException}. Nodes get a modification of
+     * their own when the diff marks them up.
+     */
+    public static final Modification NONE = new Modification(ModificationType.NONE, ModificationType.NONE);
+
     private ModificationType type;
 
     private ModificationType outputType;
@@ -68,6 +76,7 @@ public class Modification implements Cloneable {
     }
     
     public void setID(long id) {
+        checkMutable();
         this.id = id;
     }
 
@@ -76,6 +85,7 @@ public class Modification implements Cloneable {
     }
 
     public void setPrevious(Modification m) {
+        checkMutable();
         this.prevMod = m;
     }
 
@@ -84,6 +94,7 @@ public class Modification implements Cloneable {
     }
 
     public void setNext(Modification m) {
+        checkMutable();
         this.nextMod = m;
     }
 
@@ -94,6 +105,7 @@ public class Modification implements Cloneable {
     private String changes;
 
     public void setChanges(final String changes) {
+        checkMutable();
         this.changes = changes;
     }
 
@@ -106,6 +118,7 @@ public class Modification implements Cloneable {
     }
 
     public void setFirstOfID(boolean firstOfID) {
+        checkMutable();
         this.firstOfID = firstOfID;
     }
 
@@ -120,9 +133,16 @@ public class Modification implements Cloneable {
 	 * @param htmlLayoutChanges the htmlLayoutChanges to set
 	 */
 	public void setHtmlLayoutChanges(List<HtmlLayoutChange> htmlLayoutChanges) {
+		checkMutable();
 		this.htmlLayoutChanges = htmlLayoutChanges;
 	}
 
+    private void checkMutable() {
+        if (this == NONE) {
+            throw new UnsupportedOperationException("The shared unmodified Modification cannot be changed");
+        }
+    }
+
 	
     
     
@@ -0,0 +1,37 @@
+package org.outerj.daisy.diff.metrics;
+
+import org.outerj.daisy.diff.DiffReport;
+
+/**
+ * Receives the metrics of the diffs made by a {@link org.outerj.daisy.diff.DaisyDiff},
+ * to aggregate them or pass them to a monitoring system. Listeners are called
+ * on the thread running the diff, possibly by several diffs at once, so they
+ * must be thread-safe, fast and must not throw.
+ *
+ * @see HistogramMetricsListener
+ */
+public interface DiffMetricsListener {
+
+    /**
+     * Listener that ignores all metrics.
+     */
+    DiffMetricsListener NONE = new DiffMetricsListener() {
+    };
+
+    /**
+     * Called for every chunk the documents are split into in
+     * {@link org.outerj.daisy.diff.DiffMode#CHUNKED} mode, before its differences
+     * are marked up.
+     *
+     * @param oldTokens number of text nodes of the old document in the chunk
+     * @param newTokens number of text nodes of the new document in the chunk
+     */
+    default void chunkCreated(int oldTokens, int newTokens) {
+    }
+
+    /**
+     * Called after the output of a diff has been generated.
+     */
+    default void diffCompleted(DiffReport report) {
+    }
+}
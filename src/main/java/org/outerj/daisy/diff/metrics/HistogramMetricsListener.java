@@ -0,0 +1,89 @@
+package org.outerj.daisy.diff.metrics;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import org.outerj.daisy.diff.DiffMode;
+import org.outerj.daisy.diff.DiffReport;
+
+/**
+ * Aggregates the metrics of all diffs into {@link Histogram}s, to be read
+ * and exported periodically by the application. Thread-safe and lock-free.
+ */
+public class HistogramMetricsListener implements DiffMetricsListener {
+
+    private final Map<DiffMode, Histogram> latencies = new EnumMap<DiffMode, Histogram>(DiffMode.class);
+
+    private final Histogram chunkSizes = new Histogram();
+
+    private final Histogram differences = new Histogram();
+
+    private final LongAdder diffs = new LongAdder();
+
+    private final LongAdder forcedChunks = new LongAdder();
+
+    public HistogramMetricsListener() {
+        for (DiffMode mode : DiffMode.values()) {
+            latencies.put(mode, new Histogram());
+        }
+    }
+
+    @Override
+    public void chunkCreated(int oldTokens, int newTokens) {
+        chunkSizes.record(Math.max(oldTokens, newTokens));
+    }
+
+    @Override
+    public void diffCompleted(DiffReport report) {
+        latencies.get(report.getMode()).record(report.getTotalNanos());
+        differences.record(report.getDifferences());
+        diffs.increment();
+        if (report.isChunkingForced()) {
+            forcedChunks.increment();
+        }
+    }
+
+    /**
+     * @return total times of the diffs in nanoseconds, by the mode the
+     * differences were searched in
+     */
+    public Histogram getLatencies(DiffMode mode) {
+        return latencies.get(mode);
+    }
+
+    /**
+     * @return sizes of the chunks in text nodes, the larger of the old and the
+     * new side
+     */
+    public Histogram getChunkSizes() {
+        return chunkSizes;
+    }
+
+    /**
+     * @return numbers of differences per diff
+     */
+    public Histogram getDifferences() {
+        return differences;
+    }
+
+    public long getDiffCount() {
+        return diffs.sum();
+    }
+
+    /**
+     * @return number of diffs switched to {@link DiffMode#CHUNKED} because the
+     * documents were larger than the chunk size
+     */
+    public long getForcedChunksCount() {
+        return forcedChunks.sum();
+    }
+
+    /**
+     * @return share of the diffs switched to {@link DiffMode#CHUNKED}, or 0 if
+     * there were none
+     */
+    public double getForcedChunksRate() {
+        long count = diffs.sum();
+        return count == 0 ? 0 : (double) forcedChunks.sum() / count;
+    }
+}
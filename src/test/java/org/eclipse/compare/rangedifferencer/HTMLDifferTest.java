@@ -0,0 +1,185 @@
+package org.eclipse.compare.rangedifferencer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.transform.sax.SAXTransformerFactory;
+import javax.xml.transform.sax.TransformerHandler;
+import javax.xml.transform.stream.StreamResult;
+import org.eclipse.compare.internal.LCSSettings;
+import org.junit.Test;
+import org.outerj.daisy.diff.CancellationToken;
+import org.outerj.daisy.diff.Deadline;
+import org.outerj.daisy.diff.DiffCancelledException;
+import org.outerj.daisy.diff.DiffCheckpoint;
+import org.outerj.daisy.diff.DiffMode;
+import org.outerj.daisy.diff.DiffReport;
+import org.outerj.daisy.diff.html.HtmlSaxDiffOutput;
+import org.outerj.daisy.diff.html.IterableTextNodeComparator;
+import org.outerj.daisy.diff.html.TextNodeComparator;
+import org.outerj.daisy.diff.html.dom.DomTreeBuilder;
+import org.outerj.daisy.diff.html.dom.TextNode;
+import org.outerj.daisy.diff.html.dom.TokenDictionary;
+import org.w3c.dom.Document;
+import org.xml.sax.InputSource;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.AttributesImpl;
+import org.xml.sax.helpers.XMLReaderFactory;
+
+/**
+ * Checks the fallbacks of {@link HTMLDiffer} when the deadline has passed:
+ * the report is flagged as degraded and the output is still a well-formed
+ * document holding the text of the new one, whether the nodes are searched
+ * by token ids or by their text.
+ */
+public class HTMLDifferTest {
+
+    private static final DiffMode[] MODES = {
+        DiffMode.FULL, DiffMode.GREEDY, DiffMode.MYERS, DiffMode.BLOCK, DiffMode.CHUNKED
+    };
+
+    private static final int CHUNK_SIZE = 500;
+
+    private final String oldDocument;
+
+    private final String newDocument;
+
+    public HTMLDifferTest() {
+        Random random = new Random(42);
+        List<List<String>> paragraphs = new ArrayList<List<String>>();
+        for (int i = 0; i < 60; i++) {
+            List<String> words = new ArrayList<String>();
+            for (int j = 0; j < 40; j++) {
+                words.add("w" + random.nextInt(300));
+            }
+            paragraphs.add(words);
+        }
+        oldDocument = toHtml(paragraphs);
+        for (List<String> words : paragraphs) {
+            words.set(random.nextInt(words.size()), "changed");
+        }
+        newDocument = toHtml(paragraphs);
+    }
+
+    @Test
+    public void degradesTokenSearchesPastDeadline() throws Exception {
+        for (DiffMode mode : MODES) {
+            checkDegraded(mode, true);
+        }
+    }
+
+    @Test
+    public void degradesTextSearchesPastDeadline() throws Exception {
+        for (DiffMode mode : MODES) {
+            checkDegraded(mode, false);
+        }
+    }
+
+    @Test
+    public void keepsFullDiffWithinDeadline() throws Exception {
+        DiffReport report = new DiffReport();
+        String result = diff(DiffMode.FULL, true, Deadline.after(1, TimeUnit.HOURS), report);
+        assertFalse(report.isDegraded());
+        assertTrue(result.contains("diff-html-added"));
+    }
+
+    /**
+     * The LCS search over text nodes does not check the checkpoint itself,
+     * {@link CheckpointComparator} must do it.
+     */
+    @Test
+    public void stopsTextSearchAtCheckpoint() throws Exception {
+        CancellationToken token = new CancellationToken();
+        token.cancel();
+        IRangeComparator left = new CheckpointComparator(textComparator(oldDocument), token);
+        IRangeComparator right = new CheckpointComparator(textComparator(newDocument), token);
+        try {
+            RangeDifferencer.findDifferences(new LCSSettings(), left, right);
+            fail("the search ignored the checkpoint");
+        } catch (DiffCancelledException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void findsSameDifferencesThroughCheckpointComparator() throws Exception {
+        IRangeComparator left = textComparator(oldDocument);
+        IRangeComparator right = textComparator(newDocument);
+        RangeDifference[] expected = RangeDifferencer.findDifferences(new LCSSettings(), left, right);
+        RangeDifference[] actual = RangeDifferencer.findDifferences(new LCSSettings(),
+            new CheckpointComparator(left, DiffCheckpoint.NONE), new CheckpointComparator(right, DiffCheckpoint.NONE));
+        assertEquals(expected.length, actual.length);
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i].kind(), actual[i].kind());
+            assertEquals(expected[i].leftStart(), actual[i].leftStart());
+            assertEquals(expected[i].leftLength(), actual[i].leftLength());
+            assertEquals(expected[i].rightStart(), actual[i].rightStart());
+            assertEquals(expected[i].rightLength(), actual[i].rightLength());
+        }
+    }
+
+    private void checkDegraded(DiffMode mode, boolean tokenized) throws Exception {
+        DiffReport report = new DiffReport();
+        String result = diff(mode, tokenized, Deadline.after(0, TimeUnit.NANOSECONDS), report);
+        assertTrue(mode + " degraded", report.isDegraded());
+        Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder()
+            .parse(new InputSource(new StringReader(result)));
+        String text = document.getDocumentElement().getTextContent();
+        for (String word : newDocument.replaceAll("<[^>]*>", " ").trim().split("\\s+")) {
+            assertTrue(mode + " keeps " + word, text.contains(word));
+        }
+    }
+
+    private String diff(DiffMode mode, boolean tokenized, Deadline deadline, DiffReport report) throws Exception {
+        TokenDictionary dictionary = tokenized ? new TokenDictionary() : null;
+        TextNodeComparator left = new TextNodeComparator(parse(oldDocument, dictionary), Locale.ENGLISH);
+        TextNodeComparator right = new TextNodeComparator(parse(newDocument, dictionary), Locale.ENGLISH);
+        StringWriter result = new StringWriter();
+        SAXTransformerFactory factory = (SAXTransformerFactory) SAXTransformerFactory.newInstance();
+        TransformerHandler handler = factory.newTransformerHandler();
+        handler.setResult(new StreamResult(result));
+        handler.startDocument();
+        handler.startElement("", "result", "result", new AttributesImpl());
+        new HTMLDiffer(new HtmlSaxDiffOutput(handler, "diff")).diff(left, right, mode, CHUNK_SIZE, report, deadline);
+        handler.endElement("", "result", "result");
+        handler.endDocument();
+        return result.toString();
+    }
+
+    private static DomTreeBuilder parse(String html, TokenDictionary dictionary) throws Exception {
+        DomTreeBuilder builder = dictionary != null ? new DomTreeBuilder(true, dictionary) : new DomTreeBuilder(true);
+        XMLReader reader = XMLReaderFactory.createXMLReader();
+        reader.setContentHandler(builder);
+        reader.parse(new InputSource(new StringReader(html)));
+        return builder;
+    }
+
+    private static IRangeComparator textComparator(String html) throws Exception {
+        List<TextNode> nodes = parse(html, null).getTextNodes();
+        return new IterableTextNodeComparator(nodes);
+    }
+
+    private static String toHtml(List<List<String>> paragraphs) {
+        StringBuilder html = new StringBuilder("<html><body>");
+        for (int i = 0; i < paragraphs.size(); i++) {
+            List<String> words = paragraphs.get(i);
+            // every paragraph starts a segment, see TextNodePreprocessor
+            html.append("<p><span>{\u041c:").append(i).append("}</span> ");
+            for (String word : words) {
+                html.append(word).append(' ');
+            }
+            html.append("</p>");
+        }
+        return html.append("</body></html>").toString();
+    }
+}
@@ -0,0 +1,195 @@
+package org.eclipse.compare.rangedifferencer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+import org.outerj.daisy.diff.CancellationToken;
+import org.outerj.daisy.diff.DiffCancelledException;
+import org.outerj.daisy.diff.html.IterableTextNodeComparator;
+import org.outerj.daisy.diff.html.dom.BodyNode;
+import org.outerj.daisy.diff.html.dom.TagNode;
+import org.outerj.daisy.diff.html.dom.TextNode;
+import org.xml.sax.helpers.AttributesImpl;
+
+/**
+ * Checks the differences found by {@link MyersDifferencer} and
+ * {@link BlockDifferencer} on random sequences: they must form a valid edit
+ * script, and the one of {@link MyersDifferencer} must be minimal, that is
+ * keep as many items as the longest common subsequence.
+ */
+public class MyersDifferencerTest {
+
+    private static final int ROUNDS = 500;
+
+    @Test
+    public void findsMinimalEditScript() {
+        Random random = new Random(42);
+        for (int round = 0; round < ROUNDS; round++) {
+            int[] left = randomSequence(random);
+            int[] right = edit(left, random);
+            RangeDifference[] differences = MyersDifferencer.findDifferences(
+                new IntComparator(left), new IntComparator(right));
+            int kept = checkEditScript(left, right, differences);
+            assertEquals("round " + round, longestCommonSubsequence(left, right), kept);
+        }
+    }
+
+    @Test
+    public void findsNoDifferenceInEqualSequences() {
+        int[] sequence = randomSequence(new Random(7));
+        assertEquals(0, MyersDifferencer.findDifferences(
+            new IntComparator(sequence), new IntComparator(sequence.clone())).length);
+    }
+
+    @Test
+    public void findsValidBlockEditScript() {
+        Random random = new Random(42);
+        for (int round = 0; round < ROUNDS; round++) {
+            int[] left = randomSequence(random);
+            int[] right = edit(left, random);
+            List<TextNode> leftNodes = toParagraphs(left);
+            List<TextNode> rightNodes = toParagraphs(right);
+            RangeDifference[] differences = BlockDifferencer.findDifferences(
+                leftNodes, new IterableTextNodeComparator(leftNodes),
+                rightNodes, new IterableTextNodeComparator(rightNodes));
+            int kept = checkEditScript(left, right, differences);
+            assertTrue("round " + round, kept <= longestCommonSubsequence(left, right));
+        }
+    }
+
+    @Test(expected = DiffCancelledException.class)
+    public void stopsBlockSearchAtCheckpoint() {
+        List<TextNode> leftNodes = toParagraphs(new int[] {1, 2, 0, 3, 4, 0});
+        List<TextNode> rightNodes = toParagraphs(new int[] {3, 4, 0, 1, 2, 0});
+        CancellationToken cancellation = new CancellationToken();
+        cancellation.cancel();
+        BlockDifferencer.findDifferences(leftNodes, new IterableTextNodeComparator(leftNodes),
+            rightNodes, new IterableTextNodeComparator(rightNodes), cancellation);
+    }
+
+    /**
+     * Checks that the differences are ordered, do not overlap and that the
+     * items between them are equal on both sides.
+     * @return the number of items kept
+     */
+    private static int checkEditScript(int[] left, int[] right, RangeDifference[] differences) {
+        int leftIndex = 0;
+        int rightIndex = 0;
+        int kept = 0;
+        for (RangeDifference difference : differences) {
+            assertEquals(RangeDifference.CHANGE, difference.kind());
+            assertTrue(difference.leftLength() > 0 || difference.rightLength() > 0);
+            int unchanged = difference.leftStart() - leftIndex;
+            assertTrue(unchanged >= 0);
+            assertEquals(unchanged, difference.rightStart() - rightIndex);
+            kept += checkUnchanged(left, leftIndex, right, rightIndex, unchanged);
+            leftIndex = difference.leftEnd();
+            rightIndex = difference.rightEnd();
+        }
+        int unchanged = left.length - leftIndex;
+        assertEquals(unchanged, right.length - rightIndex);
+        return kept + checkUnchanged(left, leftIndex, right, rightIndex, unchanged);
+    }
+
+    private static int checkUnchanged(int[] left, int leftStart, int[] right, int rightStart, int length) {
+        for (int i = 0; i < length; i++) {
+            assertEquals(left[leftStart + i], right[rightStart + i]);
+        }
+        return length;
+    }
+
+    private static int longestCommonSubsequence(int[] left, int[] right) {
+        int[][] lengths = new int[left.length + 1][right.length + 1];
+        for (int i = 1; i <= left.length; i++) {
+            for (int j = 1; j <= right.length; j++) {
+                lengths[i][j] = left[i - 1] == right[j - 1]
+                    ? lengths[i - 1][j - 1] + 1
+                    : Math.max(lengths[i - 1][j], lengths[i][j - 1]);
+            }
+        }
+        return lengths[left.length][right.length];
+    }
+
+    private static int[] randomSequence(Random random) {
+        int[] sequence = new int[random.nextInt(60)];
+        for (int i = 0; i < sequence.length; i++) {
+            sequence[i] = random.nextInt(8);
+        }
+        return sequence;
+    }
+
+    /**
+     * @return a copy of the sequence with a few items inserted, removed or
+     * replaced
+     */
+    private static int[] edit(int[] sequence, Random random) {
+        List<Integer> items = new ArrayList<Integer>();
+        for (int item : sequence) {
+            items.add(item);
+        }
+        int edits = random.nextInt(10);
+        for (int i = 0; i < edits; i++) {
+            int position = random.nextInt(items.size() + 1);
+            int kind = random.nextInt(3);
+            if (kind == 0 || position == items.size()) {
+                items.add(position, random.nextInt(8));
+            } else if (kind == 1) {
+                items.remove(position);
+            } else {
+                items.set(position, random.nextInt(8));
+            }
+        }
+        int[] edited = new int[items.size()];
+        for (int i = 0; i < edited.length; i++) {
+            edited[i] = items.get(i);
+        }
+        return edited;
+    }
+
+    /**
+     * @return a text node for every item, in paragraphs ending after every 0
+     */
+    private static List<TextNode> toParagraphs(int[] sequence) {
+        BodyNode body = new BodyNode();
+        List<TextNode> textNodes = new ArrayList<TextNode>();
+        TagNode paragraph = null;
+        for (int item : sequence) {
+            if (paragraph == null) {
+                paragraph = new TagNode(body, "p", new AttributesImpl());
+            }
+            textNodes.add(new TextNode(paragraph, Integer.toString(item)));
+            if (item == 0) {
+                paragraph = null;
+            }
+        }
+        return textNodes;
+    }
+
+    private static class IntComparator implements IRangeComparator {
+
+        private final int[] items;
+
+        IntComparator(int[] items) {
+            this.items = items;
+        }
+
+        @Override
+        public int getRangeCount() {
+            return items.length;
+        }
+
+        @Override
+        public boolean rangesEqual(int thisIndex, IRangeComparator other, int otherIndex) {
+            return items[thisIndex] == ((IntComparator) other).items[otherIndex];
+        }
+
+        @Override
+        public boolean skipRangeComparison(int length, int maxLength, IRangeComparator other) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package org.outerj.daisy.diff;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.eclipse.compare.rangedifferencer.HTMLDiffer;
+import org.eclipse.compare.rangedifferencer.MyersDifferencer;
+import org.junit.After;
+import org.junit.Test;
+import org.outerj.daisy.diff.html.HtmlSaxDiffOutput;
+import org.outerj.daisy.diff.html.TokenComparator;
+import org.outerj.daisy.diff.html.dom.DomTreeBuilder;
+import org.xml.sax.InputSource;
+
+/**
+ * Checks that a {@link CancellationToken} cancelled while a diff is parsing,
+ * searching, marking up or writing the output makes the diff throw a
+ * {@link DiffCancelledException}, and that the parse running on the executor
+ * stops as well.
+ */
+public class CancellationTokenTest {
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+    private final String oldDocument;
+
+    private final String newDocument;
+
+    public CancellationTokenTest() {
+        Random random = new Random(42);
+        StringBuilder oldHtml = new StringBuilder("<html><body>");
+        StringBuilder newHtml = new StringBuilder("<html><body>");
+        for (int i = 0; i < 100; i++) {
+            oldHtml.append("<p>");
+            newHtml.append("<p>");
+            for (int j = 0; j < 30; j++) {
+                String word = "w" + random.nextInt(200);
+                oldHtml.append(word).append(' ');
+                newHtml.append(j % 7 == i % 7 ? "changed" : word).append(' ');
+            }
+            oldHtml.append("</p>");
+            newHtml.append("</p>");
+        }
+        oldDocument = oldHtml.append("</body></html>").toString();
+        newDocument = newHtml.append("</body></html>").toString();
+    }
+
+    @After
+    public void shutDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void cancelsWhileParsing() throws Exception {
+        checkCancelled(DiffMode.FULL, DomTreeBuilder.class, null);
+        checkCancelled(DiffMode.FULL, DomTreeBuilder.class, executor);
+    }
+
+    @Test
+    public void cancelsWhileSearching() throws Exception {
+        checkCancelled(DiffMode.FULL, TokenComparator.class, null);
+        checkCancelled(DiffMode.MYERS, MyersDifferencer.class, null);
+        checkCancelled(DiffMode.BLOCK, MyersDifferencer.class, executor);
+    }
+
+    @Test
+    public void cancelsWhileMarkingUp() throws Exception {
+        checkCancelled(DiffMode.FULL, HTMLDiffer.class, null);
+    }
+
+    @Test
+    public void cancelsWhileWritingOutput() throws Exception {
+        checkCancelled(DiffMode.FULL, HtmlSaxDiffOutput.class, null);
+    }
+
+    @Test(timeout = 10000)
+    public void stopsParseOnExecutor() throws Exception {
+        CancellationToken token = new CancellationToken();
+        EndlessReader oldReader = new EndlessReader();
+        Reader newReader = new StringReader(newDocument) {
+            @Override
+            public int read(char[] buffer, int offset, int length) throws IOException {
+                // the old document is being parsed on the executor by now
+                token.cancel();
+                return super.read(buffer, offset, Math.min(length, 64));
+            }
+        };
+        try {
+            new DaisyDiff(DiffMode.FULL, 1000, false, executor).diffHTML(new InputSource(oldReader),
+                new InputSource(newReader), DaisyDiffTest.newHandler(new StringWriter()), "diff", Locale.ENGLISH,
+                null, token);
+            fail("the diff was not cancelled");
+        } catch (DiffCancelledException e) {
+            // expected
+        }
+        long read = oldReader.read;
+        Thread.sleep(200);
+        assertEquals("the old document is no longer read", read, oldReader.read);
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+    }
+
+    /**
+     * Cancels the token from the first check made by the given class and
+     * expects the diff to throw from there.
+     */
+    private void checkCancelled(DiffMode mode, Class<?> phase, ExecutorService executor) throws Exception {
+        PhaseToken token = new PhaseToken(phase);
+        try {
+            new DaisyDiff(mode, 1000, false, executor).diffHTML(new InputSource(new StringReader(oldDocument)),
+                new InputSource(new StringReader(newDocument)), DaisyDiffTest.newHandler(new StringWriter()),
+                "diff", Locale.ENGLISH, null, token);
+            fail(mode + " was not cancelled in " + phase.getSimpleName());
+        } catch (DiffCancelledException e) {
+            assertTrue(mode + " cancelled in " + phase.getSimpleName(), token.isCancelled());
+            assertTrue(mode + " thrown from " + phase.getSimpleName(), isCalledFrom(e, phase));
+        }
+    }
+
+    private static boolean isCalledFrom(Throwable throwable, Class<?> type) {
+        for (StackTraceElement element : throwable.getStackTrace()) {
+            if (element.getClassName().equals(type.getName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * A token cancelled by the first check coming from a given class.
+     */
+    private static class PhaseToken extends CancellationToken {
+
+        private final Class<?> phase;
+
+        PhaseToken(Class<?> phase) {
+            this.phase = phase;
+        }
+
+        @Override
+        public void check() {
+            if (!isCancelled() && isCalledFrom(new Throwable(), phase)) {
+                cancel();
+            }
+            super.check();
+        }
+    }
+
+    /**
+     * An endless document telling how many characters were read from it.
+     */
+    private static class EndlessReader extends Reader {
+
+        private static final String PARAGRAPH = "<p>one more paragraph</p>";
+
+        volatile long read;
+
+        private boolean started;
+
+        @Override
+        public int read(char[] buffer, int offset, int length) {
+            String content = started ? PARAGRAPH : "<html><body>";
+            started = true;
+            int count = Math.min(length, content.length());
+            content.getChars(0, count, buffer, offset);
+            read += count;
+            return count;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package org.outerj.daisy.diff;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import javax.xml.transform.sax.SAXTransformerFactory;
+import javax.xml.transform.sax.TransformerHandler;
+import javax.xml.transform.stream.StreamResult;
+import org.junit.After;
+import org.junit.Test;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+/**
+ * Checks the handling of the sources by {@link DaisyDiff#diffHTML}: the
+ * streams are closed whatever the outcome, but only once they are no longer
+ * read, and documents with the same digest are output without reading the
+ * old one.
+ */
+public class DaisyDiffTest {
+
+    private static final String OLD = "<html><body><p>The quick brown fox</p></body></html>";
+
+    private static final String NEW = "<html><body><p>The quick red fox</p></body></html>";
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+    @After
+    public void shutDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void closesSourcesOfDifferentDocuments() throws Exception {
+        checkClosed(OLD, NEW, null);
+        checkClosed(OLD, NEW, executor);
+    }
+
+    @Test
+    public void closesSourcesOfIdenticalDocuments() throws Exception {
+        checkClosed(OLD, OLD, null);
+        checkClosed(OLD, OLD, executor);
+    }
+
+    @Test
+    public void closesSourcesWhenParsingFails() throws Exception {
+        String broken = "<html><body><p>The quick";
+        checkClosed(OLD, broken, null);
+        checkClosed(OLD, broken, executor);
+        checkClosed(broken, NEW, null);
+        checkClosed(broken, NEW, executor);
+    }
+
+    @Test(timeout = 10000)
+    public void closesOldSourceAfterItsParseStops() throws Exception {
+        StringBuilder large = new StringBuilder("<html><body>");
+        for (int i = 0; i < 20000; i++) {
+            large.append("<p>paragraph ").append(i).append("</p>");
+        }
+        large.append("</body></html>");
+        ExecutorService parser = Executors.newSingleThreadExecutor();
+        for (int round = 0; round < 5; round++) {
+            TrackingReader oldReader = new TrackingReader(large.toString());
+            Reader newReader = new StringReader("<html><body><p>broken") {
+                @Override
+                public int read(char[] buffer, int offset, int length) throws IOException {
+                    // fail only once the old document is being parsed
+                    while (!oldReader.read) {
+                        Thread.yield();
+                    }
+                    return super.read(buffer, offset, length);
+                }
+            };
+            try {
+                new DaisyDiff(DiffMode.FULL, 1000, false, parser).diffHTML(new InputSource(oldReader),
+                    new InputSource(newReader), newHandler(new StringWriter()), "diff", Locale.ENGLISH);
+                fail("the malformed document was accepted");
+            } catch (SAXException e) {
+                // the malformed document
+            }
+            // runs once the parse of the old document is over
+            parser.submit(() -> { }).get();
+            assertTrue(oldReader.closed);
+            assertFalse("old source read after being closed", oldReader.readAfterClose);
+        }
+        parser.shutdown();
+    }
+
+    @Test
+    public void skipsOldDocumentWithSameDigest() throws Exception {
+        TrackingReader oldReader = new TrackingReader(OLD);
+        TrackingReader newReader = new TrackingReader(OLD);
+        byte[] digest = {1, 2, 3};
+        DiffReport report = new DaisyDiff(DiffMode.FULL, 1000, false, executor).diffHTML(
+            new HashedInputSource(oldReader, digest), new HashedInputSource(newReader, digest),
+            newHandler(new StringWriter()), "diff", Locale.ENGLISH);
+        assertTrue(report.isIdentical());
+        assertFalse(oldReader.read);
+        assertTrue(newReader.read);
+        assertTrue(oldReader.closed);
+        assertTrue(newReader.closed);
+    }
+
+    @Test
+    public void parsesBothDocumentsWithDifferentDigests() throws Exception {
+        StringWriter result = new StringWriter();
+        DiffReport report = new DaisyDiff(DiffMode.FULL, 1000, false).diffHTML(
+            new HashedInputSource(new StringReader(OLD), new byte[] {1}),
+            new HashedInputSource(new StringReader(NEW), new byte[] {2}),
+            newHandler(result), "diff", Locale.ENGLISH);
+        assertFalse(report.isIdentical());
+        assertTrue(result.toString().contains("diff-html-removed"));
+        assertTrue(result.toString().contains("diff-html-added"));
+    }
+
+    private static void checkClosed(String oldDocument, String newDocument, ExecutorService executor)
+        throws Exception {
+        TrackingReader oldReader = new TrackingReader(oldDocument);
+        TrackingReader newReader = new TrackingReader(newDocument);
+        try {
+            new DaisyDiff(DiffMode.FULL, 1000, false, executor).diffHTML(new InputSource(oldReader),
+                new InputSource(newReader), newHandler(new StringWriter()), "diff", Locale.ENGLISH);
+        } catch (SAXException e) {
+            // the malformed document
+        }
+        assertTrue("old source closed", oldReader.closed);
+        assertTrue("new source closed", newReader.closed);
+    }
+
+    static TransformerHandler newHandler(StringWriter result) throws Exception {
+        SAXTransformerFactory factory = (SAXTransformerFactory) SAXTransformerFactory.newInstance();
+        TransformerHandler handler = factory.newTransformerHandler();
+        handler.setResult(new StreamResult(result));
+        return handler;
+    }
+
+    /**
+     * A reader telling whether it was read and closed.
+     */
+    static class TrackingReader extends StringReader {
+
+        volatile boolean read;
+
+        volatile boolean closed;
+
+        volatile boolean readAfterClose;
+
+        TrackingReader(String content) {
+            super(content);
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) throws IOException {
+            read = true;
+            if (closed) {
+                readAfterClose = true;
+            }
+            return super.read(buffer, offset, length);
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+            super.close();
+        }
+    }
+}
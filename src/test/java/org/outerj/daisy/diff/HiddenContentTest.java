@@ -0,0 +1,80 @@
+package org.outerj.daisy.diff;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Locale;
+import java.util.function.Predicate;
+import org.junit.Test;
+import org.outerj.daisy.diff.html.dom.TagNode;
+import org.outerj.daisy.diff.metrics.DiffMetricsListener;
+import org.xml.sax.InputSource;
+
+/**
+ * Checks that the hidden container rule given to {@link DaisyDiff} keeps the
+ * content of the containers out of the diff, including the chunks of a
+ * {@link DiffMode#CHUNKED} diff.
+ */
+public class HiddenContentTest {
+
+    private static final Predicate<TagNode> SECRET_RULE =
+        tag -> "secret".equals(tag.getAttributes().getValue("class"));
+
+    private static final String OLD = document("old hidden", "same");
+
+    private static final String NEW = document("new hidden words", "changed");
+
+    @Test
+    public void hidesContentInChunkedDiff() throws Exception {
+        checkHidden(DiffMode.CHUNKED);
+    }
+
+    @Test
+    public void hidesContentInFullDiff() throws Exception {
+        checkHidden(DiffMode.FULL);
+    }
+
+    @Test
+    public void diffsContentWithoutRule() throws Exception {
+        StringWriter result = new StringWriter();
+        diff(DiffMode.CHUNKED, null, result);
+        String secret = getSecret(result.toString());
+        assertTrue(secret, secret.contains("diff-html-added"));
+        assertTrue(secret, secret.contains("diff-html-removed"));
+    }
+
+    private static void checkHidden(DiffMode mode) throws Exception {
+        StringWriter result = new StringWriter();
+        DiffReport report = diff(mode, SECRET_RULE, result);
+        assertEquals(mode + " secret unchanged", "<p class=\"secret\">new hidden words</p>",
+            getSecret(result.toString()));
+        assertEquals(mode + " differences", 1, report.getDifferences());
+        assertTrue(mode + " visible change", result.toString().contains("diff-html-added"));
+    }
+
+    private static DiffReport diff(DiffMode mode, Predicate<TagNode> hiddenContainerRule, StringWriter result)
+        throws Exception {
+        DiffReport report = new DaisyDiff(mode, 1000, false, null, DiffMetricsListener.NONE, ParseMode.STRICT,
+            hiddenContainerRule).diffHTML(new InputSource(new StringReader(OLD)),
+            new InputSource(new StringReader(NEW)), DaisyDiffTest.newHandler(result), "diff", Locale.ENGLISH);
+        assertFalse(report.isIdentical());
+        return report;
+    }
+
+    private static String getSecret(String result) {
+        int start = result.indexOf("<p class=\"secret\">");
+        return result.substring(start, result.indexOf("</p>", start) + "</p>".length());
+    }
+
+    /**
+     * Every visible paragraph starts a segment, the hidden one lies in the
+     * chunk of the first.
+     */
+    private static String document(String secret, String text) {
+        return "<html><body><p><span>{\u041c:1}</span> intro</p><p class=\"secret\">" + secret + "</p>"
+            + "<p><span>{\u041c:2}</span> " + text + "</p><p><span>{\u041c:3}</span> tail</p></body></html>";
+    }
+}
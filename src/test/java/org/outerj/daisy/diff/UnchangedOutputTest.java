@@ -0,0 +1,84 @@
+package org.outerj.daisy.diff;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Locale;
+import org.eclipse.compare.rangedifferencer.HTMLDiffer;
+import org.junit.Test;
+import org.outerj.daisy.diff.html.HtmlSaxDiffOutput;
+import org.outerj.daisy.diff.html.TextNodeComparator;
+import org.outerj.daisy.diff.html.dom.DomTreeBuilder;
+import org.outerj.daisy.diff.html.dom.TokenDictionary;
+import org.xml.sax.InputSource;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.XMLReaderFactory;
+
+/**
+ * Checks that documents {@link DaisyDiff} finds identical, and outputs
+ * without searching their differences, give the same output as a
+ * {@link DiffMode#FULL} diff of them.
+ */
+public class UnchangedOutputTest {
+
+    private static final String DOCUMENT = "<html><body><h1>Title</h1>"
+        + "<p>The <b>quick</b> brown fox <a href=\"#jumps\">jumps</a> over</p>"
+        + "<ul><li>one</li><li>two <i>three</i></li></ul>"
+        + "<div class=\"color__800000 display_none\">hidden note</div>"
+        + "<table><tr><td>cell</td><td><img src=\"fox.png\"/></td></tr></table></body></html>";
+
+    @Test
+    public void outputsSameDocumentLikeFullDiff() throws Exception {
+        checkSameOutput(DOCUMENT, DOCUMENT);
+    }
+
+    @Test
+    public void outputsDocumentDifferingInWhiteSpaceLikeFullDiff() throws Exception {
+        String spaced = DOCUMENT.replace("<p>The ", "<p>\n  The  ")
+            .replace(" over</p>", "\n over \n</p>")
+            .replace("<li>one</li>", "\n<li> one </li>\n");
+        checkSameOutput(DOCUMENT, spaced);
+        checkSameOutput(spaced, DOCUMENT);
+    }
+
+    @Test
+    public void outputsDocumentDifferingInHiddenContentLikeFullDiff() throws Exception {
+        String changed = DOCUMENT.replace("hidden note", "another hidden note, much longer");
+        checkSameOutput(DOCUMENT, changed);
+        checkSameOutput(changed, DOCUMENT);
+    }
+
+    private static void checkSameOutput(String oldDocument, String newDocument) throws Exception {
+        StringWriter result = new StringWriter();
+        DiffReport report = new DaisyDiff(DiffMode.FULL, 1000, false).diffHTML(
+            new InputSource(new StringReader(oldDocument)), new InputSource(new StringReader(newDocument)),
+            DaisyDiffTest.newHandler(result), "diff", Locale.ENGLISH);
+        assertTrue(report.isIdentical());
+        assertEquals(fullDiff(oldDocument, newDocument), result.toString());
+    }
+
+    /**
+     * Diffs the documents without looking for identical ones first.
+     */
+    private static String fullDiff(String oldDocument, String newDocument) throws Exception {
+        TokenDictionary dictionary = new TokenDictionary();
+        TextNodeComparator left = new TextNodeComparator(parse(oldDocument, dictionary), Locale.ENGLISH);
+        TextNodeComparator right = new TextNodeComparator(parse(newDocument, dictionary), Locale.ENGLISH);
+        StringWriter result = new StringWriter();
+        DiffReport report = new DiffReport();
+        new HTMLDiffer(new HtmlSaxDiffOutput(DaisyDiffTest.newHandler(result), "diff"))
+            .diff(left, right, DiffMode.FULL, 1000, report);
+        assertEquals(0, report.getDifferences());
+        return result.toString();
+    }
+
+    private static DomTreeBuilder parse(String html, TokenDictionary dictionary) throws Exception {
+        DomTreeBuilder builder = new DomTreeBuilder(true, dictionary);
+        XMLReader reader = XMLReaderFactory.createXMLReader();
+        reader.setContentHandler(builder);
+        reader.parse(new InputSource(new StringReader(html)));
+        return builder;
+    }
+}
@@ -0,0 +1,117 @@
+package org.outerj.daisy.diff;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import org.junit.Test;
+import org.outerj.daisy.diff.metrics.DiffMetricsListener;
+import org.outerj.daisy.diff.html.dom.DomTreeBuilder;
+import org.outerj.daisy.diff.html.dom.TagNode;
+import org.outerj.daisy.diff.html.dom.TextNode;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXParseException;
+import org.xml.sax.XMLReader;
+
+/**
+ * Checks the reuse of the pooled readers and the trees the readers of both
+ * {@link ParseMode}s build.
+ */
+public class XMLReaderPoolTest {
+
+    private static final String MALFORMED = "<P>one &amp; two&nbsp;three<p>four <B>bold <i>both</b> italic"
+        + "<TABLE><TR><TD>cell</table>";
+
+    private static final String TABLE = "<html><body><table><tr><td>cell</td></tr></table></body></html>";
+
+    @Test
+    public void reusesReleasedReaders() throws Exception {
+        XMLReaderPool pool = new XMLReaderPool(1, new XMLReaderPool.DefaultReaderFactory());
+        XMLReader first = pool.borrow();
+        XMLReader second = pool.borrow();
+        assertNotSame(first, second);
+        DomTreeBuilder builder = new DomTreeBuilder(true);
+        first.setContentHandler(builder);
+        pool.release(first);
+        // the pool holds a single reader, the second one is dropped
+        pool.release(second);
+        XMLReader reused = pool.borrow();
+        assertSame(first, reused);
+        assertNotSame(builder, reused.getContentHandler());
+        assertNotSame(second, pool.borrow());
+    }
+
+    @Test
+    public void parsesMalformedHtmlLeniently() throws Exception {
+        assertEquals(Arrays.asList(
+            "body/p [one]",
+            "body/p [&]",
+            "body/p [two three]",
+            "body/p [four]",
+            "body/p/b [bold]",
+            "body/p/b/i [both]",
+            "body/p/i [italic]",
+            "body/p/table/tbody/tr/td [cell]"), parse(new XMLReaderPool.HtmlReaderFactory(), MALFORMED));
+    }
+
+    @Test
+    public void rejectsMalformedHtmlStrictly() throws Exception {
+        try {
+            parse(new XMLReaderPool.DefaultReaderFactory(), MALFORMED);
+            fail("the malformed document was accepted");
+        } catch (SAXParseException e) {
+            // expected
+        }
+    }
+
+    /**
+     * NekoHTML inserts the tbody elements HTML implies, so the ancestors of
+     * table cells differ from the ones the strict parser reports.
+     */
+    @Test
+    public void insertsTableBodyLeniently() throws Exception {
+        assertEquals(Arrays.asList("body/table/tr/td [cell]"), parse(new XMLReaderPool.DefaultReaderFactory(), TABLE));
+        assertEquals(Arrays.asList("body/table/tbody/tr/td [cell]"), parse(new XMLReaderPool.HtmlReaderFactory(), TABLE));
+    }
+
+    @Test
+    public void diffsMalformedHtmlLeniently() throws Exception {
+        StringWriter result = new StringWriter();
+        DiffReport report = new DaisyDiff(DiffMode.FULL, 1000, false, null, DiffMetricsListener.NONE,
+            ParseMode.LENIENT).diffHTML(
+            new InputSource(new StringReader(MALFORMED)),
+            new InputSource(new StringReader(MALFORMED.replace("four", "five"))),
+            DaisyDiffTest.newHandler(result), "diff", Locale.ENGLISH);
+        assertFalse(report.isIdentical());
+        assertTrue(result.toString().contains("five"));
+        assertTrue(result.toString().contains("diff-html-removed"));
+    }
+
+    /**
+     * @return every text node with the names of its ancestors
+     */
+    private static List<String> parse(XMLReaderPool.ReaderFactory factory, String html) throws Exception {
+        XMLReader reader = factory.create();
+        DomTreeBuilder builder = new DomTreeBuilder(true);
+        reader.setContentHandler(builder);
+        reader.parse(new InputSource(new StringReader(html)));
+        List<String> nodes = new ArrayList<String>();
+        for (TextNode node : builder.getTextNodes()) {
+            StringBuilder path = new StringBuilder();
+            for (TagNode ancestor : node.getAncestors()) {
+                path.append(path.length() > 0 ? "/" : "").append(ancestor.getQName());
+            }
+            nodes.add(path + " [" + node.getText() + "]");
+        }
+        return nodes;
+    }
+}
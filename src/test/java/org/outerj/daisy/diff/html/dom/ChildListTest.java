@@ -0,0 +1,86 @@
+package org.outerj.daisy.diff.html.dom;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+import org.xml.sax.helpers.AttributesImpl;
+
+/**
+ * Checks {@link ChildList} against an {@link ArrayList} on random appends,
+ * insertions and removals, before and after it turns into a tree.
+ */
+public class ChildListTest {
+
+    @Test
+    public void keepsOrderAndPositions() {
+        Random random = new Random(42);
+        for (int round = 0; round < 50; round++) {
+            ChildList children = new ChildList();
+            List<Node> expected = new ArrayList<Node>();
+            int initialSize = random.nextInt(50);
+            for (int i = 0; i < initialSize; i++) {
+                Node node = newNode(i);
+                children.add(node);
+                expected.add(node);
+            }
+            check(expected, children);
+            for (int operation = 0; operation < 300; operation++) {
+                int kind = random.nextInt(4);
+                if (kind == 0) {
+                    Node node = newNode(operation);
+                    children.add(node);
+                    expected.add(node);
+                } else if (kind == 1 || expected.isEmpty()) {
+                    int index = random.nextInt(expected.size() + 1);
+                    Node node = newNode(operation);
+                    children.add(index, node);
+                    expected.add(index, node);
+                } else if (kind == 2) {
+                    Node node = expected.remove(random.nextInt(expected.size()));
+                    children.remove(node);
+                } else {
+                    int index = random.nextInt(expected.size());
+                    assertEquals(index, children.indexOf(expected.get(index)));
+                }
+                check(expected, children);
+            }
+        }
+    }
+
+    @Test
+    public void findsEqualNodeOfAnotherTree() {
+        ChildList children = new ChildList();
+        children.add(new TagNode(null, "li", new AttributesImpl()));
+        children.add(new TagNode(null, "p", new AttributesImpl()));
+        TagNode other = new TagNode(null, "p", new AttributesImpl());
+        assertEquals(1, children.indexOf(other));
+        children.add(0, newNode(0));
+        assertEquals(2, children.indexOf(other));
+        assertEquals(-1, children.indexOf(newNode(1)));
+    }
+
+    /**
+     * @return a node without parent, added to lists by the tests only
+     */
+    private static Node newNode(int id) {
+        return new TextNode(null, Integer.toString(id));
+    }
+
+    private static void check(List<Node> expected, ChildList children) {
+        assertEquals(expected.size(), children.size());
+        Iterator<Node> iterator = children.iterator();
+        for (int i = 0; i < expected.size(); i++) {
+            assertSame(expected.get(i), children.get(i));
+            assertSame(expected.get(i), iterator.next());
+        }
+        assertEquals(false, iterator.hasNext());
+        for (int i = 0; i < expected.size(); i += 7) {
+            assertEquals(i, children.indexOf(expected.get(i)));
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package org.outerj.daisy.diff.html.dom;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+import org.outerj.daisy.diff.html.dom.helper.AttributesMap;
+import org.xml.sax.helpers.AttributesImpl;
+
+/**
+ * Checks the cached ancestors of the nodes after the tree changes and in
+ * copies of it, and that the tag signatures find the same tags similar as
+ * the {@link AttributesMap} comparison.
+ */
+public class TagNodeTest {
+
+    @Test
+    public void updatesAncestorsOfMovedSubtree() {
+        TagNode root = new TagNode(null, "html", new AttributesImpl());
+        TagNode div = new TagNode(root, "div", new AttributesImpl());
+        TagNode section = new TagNode(root, "section", new AttributesImpl());
+        TagNode paragraph = new TagNode(div, "p", new AttributesImpl());
+        TextNode text = new TextNode(paragraph, "word");
+        assertEquals(Arrays.asList(root, div, paragraph), text.getAncestors());
+        long signature = text.getAncestorSignature();
+
+        paragraph.setParent(section);
+        section.addChild(paragraph);
+        assertEquals(Arrays.asList(root, section, paragraph), text.getAncestors());
+        assertEquals(ancestorSignature("html", "section", "p"), text.getAncestorSignature());
+        assertEquals(signature, ancestorSignature("html", "div", "p"));
+    }
+
+    @Test
+    public void copiesTreeWithItsOwnAncestors() {
+        TagNode root = new TagNode(null, "html", new AttributesImpl());
+        TagNode list = new TagNode(root, "ul", new AttributesImpl());
+        TagNode item = new TagNode(list, "li", new AttributesImpl());
+        TextNode text = new TextNode(item, "word");
+        text.setWhiteBefore(true);
+        // the copy must not reuse the ancestors cached in the original
+        long signature = text.getAncestorSignature();
+        text.getAncestors();
+
+        TagNode copy = (TagNode) root.copyTree();
+        TagNode copiedList = (TagNode) copy.getChild(0);
+        TagNode copiedItem = (TagNode) copiedList.getChild(0);
+        TextNode copiedText = (TextNode) copiedItem.getChild(0);
+        assertNotSame(text, copiedText);
+        assertEquals("word", copiedText.getText());
+        assertEquals(true, copiedText.isWhiteBefore());
+        assertEquals(Arrays.asList(copy, copiedList, copiedItem), copiedText.getAncestors());
+        assertSame(copy, copiedText.getRoot());
+        assertSame(copy, copiedList.getRoot());
+        assertEquals(signature, copiedText.getAncestorSignature());
+        assertEquals(0, copiedList.getIndexOf(copiedItem));
+    }
+
+    @Test
+    public void findsTagsSimilarLikeAttributesMap() {
+        TagNode tag = newTag("p", "id", "a", "style", "color: red; margin:0", "class", "one two");
+        checkSimilarity(tag, newTag("P", "class", "one two", "id", "a", "style", "color: red; margin:0"), true);
+        checkSimilarity(tag, newTag("p", "ID", "a", "STYLE", "margin : 0 ;color:red;", "CLASS", " two\tone "), true);
+        checkSimilarity(tag, newTag("p", "id", "a", "style", "color: red", "class", "one two"), false);
+        checkSimilarity(tag, newTag("p", "id", "A", "style", "color: red; margin:0", "class", "one two"), false);
+        checkSimilarity(tag, newTag("p", "id", "a", "style", "color: red; margin:0", "class", "One two"), false);
+        checkSimilarity(tag, newTag("p", "id", "a", "style", "color: red; margin:0"), false);
+        checkSimilarity(tag, newTag("div", "id", "a", "style", "color: red; margin:0", "class", "one two"), false);
+        checkSimilarity(newTag("p", "style", "color:red"), newTag("p", "style", " color:red ; ; "), true);
+        checkSimilarity(newTag("p", "class", ""), newTag("p", "class", "  "), true);
+    }
+
+    @Test
+    public void findsRandomTagsSimilarLikeAttributesMap() {
+        Random random = new Random(42);
+        String[] names = {"p", "P", "span"};
+        String[][] values = {
+            {"id", "a", "b"},
+            {"style", "color:red", "color : red;", "margin:0; color:red", " color:red ;\nmargin : 0 ", "color:blue"},
+            {"class", "one", "one two", "two  one", "\tone two ", "two"},
+            {"title", "", "x"}
+        };
+        List<TagNode> tags = new ArrayList<TagNode>();
+        for (int i = 0; i < 300; i++) {
+            List<String> attributes = new ArrayList<String>();
+            for (String[] attribute : values) {
+                if (random.nextBoolean()) {
+                    String name = random.nextBoolean() ? attribute[0] : attribute[0].toUpperCase();
+                    attributes.add(name + "=" + attribute[1 + random.nextInt(attribute.length - 1)]);
+                }
+            }
+            Collections.shuffle(attributes, random);
+            String[] pairs = new String[2 * attributes.size()];
+            for (int j = 0; j < attributes.size(); j++) {
+                String attribute = attributes.get(j);
+                pairs[2 * j] = attribute.substring(0, attribute.indexOf('='));
+                pairs[2 * j + 1] = attribute.substring(attribute.indexOf('=') + 1);
+            }
+            tags.add(newTag(names[random.nextInt(names.length)], pairs));
+        }
+        int similar = 0;
+        for (TagNode tag : tags) {
+            for (TagNode other : tags) {
+                boolean expected = isSimilarByAttributesMap(tag, other);
+                checkSimilarity(tag, other, expected);
+                similar += expected ? 1 : 0;
+            }
+        }
+        assertTrue(similar > tags.size());
+    }
+
+    /**
+     * Checks the similarity of two tags of different trees against the
+     * comparison the signatures replaced, and that similar tags are equal
+     * and have the same hash code.
+     */
+    private static void checkSimilarity(TagNode tag, TagNode other, boolean similar) {
+        String tags = tag.getOpeningTag() + " " + other.getOpeningTag();
+        assertEquals(tags, similar, isSimilarByAttributesMap(tag, other));
+        assertEquals(tags, similar, tag.isSimilarTag(other));
+        assertEquals(tags, similar, other.isSimilarTag(tag));
+        assertEquals(tags, similar, tag.equals(other));
+        if (similar) {
+            assertEquals(tags, tag.hashCode(), other.hashCode());
+            assertEquals(tags, tag.getTagSignature(), other.getTagSignature());
+        } else {
+            assertFalse(tags, tag.getTagSignature() == other.getTagSignature());
+        }
+    }
+
+    private static boolean isSimilarByAttributesMap(TagNode tag, TagNode other) {
+        return tag.getQName().equalsIgnoreCase(other.getQName())
+            && new AttributesMap(tag.getAttributes()).hasSameAttributes(other.getAttributes());
+    }
+
+    /**
+     * @param attributes the names of the attributes, each followed by its value
+     */
+    private static TagNode newTag(String name, String... attributes) {
+        AttributesImpl attributesImpl = new AttributesImpl();
+        for (int i = 0; i < attributes.length; i += 2) {
+            attributesImpl.addAttribute("", attributes[i], attributes[i], "CDATA", attributes[i + 1]);
+        }
+        return new TagNode(null, name, attributesImpl);
+    }
+
+    private static long ancestorSignature(String... names) {
+        TagNode parent = null;
+        for (String name : names) {
+            parent = new TagNode(parent, name, new AttributesImpl());
+        }
+        return new TextNode(parent, "word").getAncestorSignature();
+    }
+}